@@ -0,0 +1,177 @@
+package Jolox.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Results of a macro benchmark run, keyed by engine and then by program, stored as JSON:
+ *
+ * <pre>
+ * {
+ *   "colox": {
+ *     "fib": {"median": 92.1, "low": 91.5, "high": 93.0, "samples": [92.1, 91.4, ...]}
+ *   },
+ *   "jolox": { ... }
+ * }
+ * </pre>
+ *
+ * Only the samples are read back; the median and interval are recomputed from them, so the other fields are there for
+ * whoever reads the file.
+ */
+final class Baseline {
+    private final Map<String, Map<String, Statistics>> results = new TreeMap<>();
+
+    Statistics get(String engine, String program) {
+        Map<String, Statistics> programs = results.get(engine);
+        return programs == null ? null : programs.get(program);
+    }
+
+    void put(String engine, String program, Statistics statistics) {
+        results.computeIfAbsent(engine, key -> new TreeMap<>()).put(program, statistics);
+    }
+
+    void write(Path path) throws IOException {
+        StringBuilder json = new StringBuilder("{\n");
+        String engineSeparator = "";
+        for(Map.Entry<String, Map<String, Statistics>> engine : results.entrySet()) {
+            json.append(engineSeparator).append("  \"").append(engine.getKey()).append("\": {\n");
+            String programSeparator = "";
+            for(Map.Entry<String, Statistics> program : engine.getValue().entrySet()) {
+                Statistics statistics = program.getValue();
+                json.append(programSeparator).append("    \"").append(program.getKey()).append("\": {")
+                    .append("\"median\": ").append(statistics.median())
+                    .append(", \"low\": ").append(statistics.low())
+                    .append(", \"high\": ").append(statistics.high())
+                    .append(", \"samples\": [");
+                for(int i = 0; i < statistics.samples().length; i++) {
+                    if(i > 0) json.append(", ");
+                    json.append(statistics.samples()[i]);
+                }
+                json.append("]}");
+                programSeparator = ",\n";
+            }
+            json.append("\n  }");
+            engineSeparator = ",\n";
+        }
+        json.append("\n}\n");
+        Path parent = path.toAbsolutePath().getParent();
+        if(parent != null) Files.createDirectories(parent);
+        Files.writeString(path, json, StandardCharsets.UTF_8);
+    }
+
+    static Baseline read(Path path) throws IOException {
+        Baseline baseline = new Baseline();
+        JsonReader reader = new JsonReader(Files.readString(path, StandardCharsets.UTF_8));
+        reader.expect('{');
+        for(boolean first = true; reader.nextMember(first); first = false) {
+            String engine = reader.string();
+            reader.expect(':');
+            reader.expect('{');
+            for(boolean firstProgram = true; reader.nextMember(firstProgram); firstProgram = false) {
+                String program = reader.string();
+                reader.expect(':');
+                double[] samples = reader.samples();
+                if(samples.length > 1) baseline.put(engine, program, Statistics.of(samples));
+            }
+        }
+        return baseline;
+    }
+
+    /**
+     * Just enough of a JSON reader for the layout above: nested objects with string keys whose leaves are objects
+     * holding a "samples" array. Their other, numeric, members are skipped.
+     */
+    private static final class JsonReader {
+        private final String json;
+        private int position = 0;
+
+        JsonReader(String json) {
+            this.json = json;
+        }
+
+        /** Steps over the separator before the next member of the current object; false at its closing brace. */
+        boolean nextMember(boolean first) {
+            skipWhitespace();
+            if(peek() == '}') {
+                position++;
+                return false;
+            }
+            if(!first) expect(',');
+            return true;
+        }
+
+        double[] samples() {
+            double[] samples = new double[0];
+            expect('{');
+            for(boolean first = true; nextMember(first); first = false) {
+                String key = string();
+                expect(':');
+                if(key.equals("samples")) samples = numbers();
+                else number();
+            }
+            return samples;
+        }
+
+        private double[] numbers() {
+            List<Double> numbers = new ArrayList<>();
+            expect('[');
+            skipWhitespace();
+            if(peek() == ']') {
+                position++;
+                return new double[0];
+            }
+            numbers.add(number());
+            skipWhitespace();
+            while(peek() == ',') {
+                position++;
+                numbers.add(number());
+                skipWhitespace();
+            }
+            expect(']');
+            return numbers.stream().mapToDouble(Double::doubleValue).toArray();
+        }
+
+        private double number() {
+            skipWhitespace();
+            int start = position;
+            while(position < json.length() && "+-.eE0123456789".indexOf(json.charAt(position)) >= 0) position++;
+            try {
+                return Double.parseDouble(json.substring(start, position));
+            } catch (NumberFormatException e) {
+                throw error("Expected a number");
+            }
+        }
+
+        String string() {
+            expect('"');
+            int start = position;
+            while(position < json.length() && json.charAt(position) != '"') position++;
+            if(position == json.length()) throw error("Unterminated string");
+            return json.substring(start, position++);
+        }
+
+        void expect(char expected) {
+            skipWhitespace();
+            if(peek() != expected) throw error("Expected '" + expected + "'");
+            position++;
+        }
+
+        private char peek() {
+            return position < json.length() ? json.charAt(position) : '\0';
+        }
+
+        private void skipWhitespace() {
+            while(position < json.length() && Character.isWhitespace(json.charAt(position))) position++;
+        }
+
+        private IllegalStateException error(String message) {
+            return new IllegalStateException(message + " at offset " + position + " of the baseline file");
+        }
+    }
+}
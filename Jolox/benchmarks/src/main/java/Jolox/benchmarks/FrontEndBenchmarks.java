@@ -0,0 +1,72 @@
+package Jolox.benchmarks;
+
+import Jolox.interpreter.Stmt;
+import Jolox.lexical_scanner.Scanner;
+import Jolox.lexical_scanner.Token;
+import Jolox.parser.Parser;
+import Jolox.resolver.Resolution;
+import Jolox.resolver.Resolver;
+import Jolox.utils.RunMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of each front end phase on a large generated script. Every phase gets its input prepared up front, so
+ * e.g. the parser benchmark measures parsing alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrontEndBenchmarks {
+    @Param({"1000", "10000"})
+    public int functions;
+
+    private String source;
+    private List<Token> tokens;
+    private List<Stmt> statements;
+
+    @Setup
+    public void prepare() {
+        source = Workloads.generate(functions);
+        tokens = new Scanner(source, Workloads.silentReporter()).scanTokens();
+        statements = new Parser(tokens, RunMode.FILE, Workloads.silentReporter()).parse();
+    }
+
+    @Benchmark
+    public List<Token> scan() {
+        return new Scanner(source, Workloads.silentReporter()).scanTokens();
+    }
+
+    @Benchmark
+    public List<Stmt> parse() {
+        return new Parser(tokens, RunMode.FILE, Workloads.silentReporter()).parse();
+    }
+
+    @Benchmark
+    public List<Stmt> scanAndParse() {
+        return new Parser(new Scanner(source, Workloads.silentReporter()), RunMode.FILE,
+                Workloads.silentReporter()).parse();
+    }
+
+    @Benchmark
+    public Resolution resolve() {
+        Resolver resolver = new Resolver(Workloads.silentReporter());
+        resolver.resolve(statements);
+        return resolver.getResolution();
+    }
+}
@@ -0,0 +1,52 @@
+package Jolox.benchmarks;
+
+import Jolox.interpreter.Interpreter;
+import Jolox.interpreter.Program;
+import Jolox.utils.ErrorReporter;
+import Jolox.utils.RunMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the classic interpreter workloads in src/main/resources/workloads. Each script is compiled once per trial,
+ * so only interpretation is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterpreterBenchmarks {
+    @Param({"fib", "method_calls", "fields", "binary_trees", "strings", "closures", "construction"})
+    public String workload;
+
+    private Program program;
+
+    @Setup
+    public void compile() {
+        program = Workloads.compile(Workloads.source(workload));
+    }
+
+    @Benchmark
+    public Interpreter interpret() {
+        ErrorReporter errorReporter = Workloads.silentReporter();
+        Interpreter interpreter = new Interpreter(errorReporter);
+        interpreter.setOutput(Writer.nullWriter());
+        interpreter.interpret(program, RunMode.FILE);
+        if(errorReporter.hasRuntimeError()) throw new IllegalStateException(errorReporter.getLastError());
+        return interpreter;
+    }
+}
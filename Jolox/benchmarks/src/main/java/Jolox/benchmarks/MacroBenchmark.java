@@ -0,0 +1,221 @@
+package Jolox.benchmarks;
+
+import Jolox.utils.ExitCode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cross-implementation macro benchmarks. Every script in the corpus directory is run as a separate process under
+ * Jolox and Colox; the first warmup run of each engine is used to check that both print exactly the same output and
+ * exit with the same code, and the measured runs give a median wall-clock time with a bootstrapped 95% confidence
+ * interval. Results can be saved as a JSON baseline and later runs compared against it: a program counts as a
+ * regression only when its median is slower than the threshold and the two confidence intervals do not overlap.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar Jolox.benchmarks.MacroBenchmark --colox ../../Colox/build/Colox \
+ *      --save-baseline baselines/local.json
+ * java -cp target/benchmarks.jar Jolox.benchmarks.MacroBenchmark --colox ../../Colox/build/Colox \
+ *      --baseline baselines/local.json
+ * </pre>
+ *
+ * Exits with 1 when an engine fails, the engines disagree, or a regression is found.
+ */
+public class MacroBenchmark {
+    private static final String USAGE = """
+            Usage: MacroBenchmark [options]
+              --corpus <dir>           directory of .olx programs (default: corpus)
+              --colox <path>           Colox executable; Colox is skipped when absent
+              --jolox <command>        command that runs a Jolox script (default: this JVM and classpath)
+              --warmup <n>             unmeasured runs per program and engine (default: 2)
+              --runs <n>               measured runs per program and engine (default: 10)
+              --timeout <seconds>      limit for a single run (default: 120)
+              --threshold <percent>    slowdown that counts as a regression (default: 5)
+              --baseline <file>        compare against a saved baseline
+              --save-baseline <file>   write this run's results as a baseline""";
+
+    record Engine(String name, List<String> command) {}
+
+    record Run(long nanos, int exitCode, String output) {}
+
+    private Path corpus = Path.of("corpus");
+    private final List<Engine> engines = new ArrayList<>();
+    private int warmup = 2;
+    private int runs = 10;
+    private long timeout = 120;
+    private double threshold = 5;
+    private Path baselinePath;
+    private Path savePath;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        MacroBenchmark benchmark = new MacroBenchmark();
+        try {
+            benchmark.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(ExitCode.COMMAND_LINE_USAGE_ERROR.code);
+        }
+        System.exit(benchmark.run() ? 0 : 1);
+    }
+
+    private void parseArguments(String[] args) {
+        List<String> jolox = defaultJoloxCommand();
+        String colox = null;
+        for(int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if(i + 1 == args.length) throw new IllegalArgumentException("Missing value for " + option);
+            String value = args[++i];
+            try {
+                switch (option) {
+                    case "--corpus" -> corpus = Path.of(value);
+                    case "--colox" -> colox = value;
+                    case "--jolox" -> jolox = Arrays.asList(value.trim().split("\\s+"));
+                    case "--warmup" -> warmup = Integer.parseInt(value);
+                    case "--runs" -> runs = Integer.parseInt(value);
+                    case "--timeout" -> timeout = Long.parseLong(value);
+                    case "--threshold" -> threshold = Double.parseDouble(value);
+                    case "--baseline" -> baselinePath = Path.of(value);
+                    case "--save-baseline" -> savePath = Path.of(value);
+                    default -> throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Expected a number for " + option + " but got " + value);
+            }
+        }
+        if(warmup < 1) throw new IllegalArgumentException("At least one warmup run is needed to check the output");
+        if(runs < 2) throw new IllegalArgumentException("At least two measured runs are needed");
+        engines.add(new Engine("jolox", jolox));
+        if(colox != null) engines.add(new Engine("colox", List.of(colox)));
+    }
+
+    private static List<String> defaultJoloxCommand() {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        return List.of(java, "-cp", System.getProperty("java.class.path"), "-Djolox.precompile=false",
+                "Jolox.olox.Olox");
+    }
+
+    private boolean run() throws IOException, InterruptedException {
+        List<Path> programs;
+        try (Stream<Path> files = Files.list(corpus)) {
+            programs = files.filter(file -> file.toString().endsWith(".olx")).sorted().toList();
+        }
+        if(programs.isEmpty()) {
+            System.err.println("No .olx programs in " + corpus);
+            return false;
+        }
+        if(engines.size() == 1) System.err.println("No --colox given; only Jolox will be measured.");
+
+        Baseline baseline = baselinePath == null ? null : Baseline.read(baselinePath);
+        Baseline current = new Baseline();
+        boolean passed = true;
+
+        System.out.printf("%-16s %-6s %10s %21s %10s %8s%n", "program", "engine", "median ms", "95% CI", "baseline",
+                "change");
+        for(Path program : programs) {
+            String name = program.getFileName().toString().replaceFirst("\\.olx$", "");
+            Map<String, Run> firstRuns = new LinkedHashMap<>();
+            for(Engine engine : engines) {
+                Run first = execute(engine, program);
+                firstRuns.put(engine.name(), first);
+                if(first.exitCode() != 0) {
+                    System.out.printf("%-16s %-6s failed with exit code %d%n", name, engine.name(), first.exitCode());
+                    passed = false;
+                    continue;
+                }
+                for(int i = 1; i < warmup; i++) execute(engine, program);
+
+                double[] samples = new double[runs];
+                for(int i = 0; i < runs; i++) samples[i] = execute(engine, program).nanos() / 1e6;
+                Statistics statistics = Statistics.of(samples);
+                current.put(engine.name(), name, statistics);
+
+                Statistics previous = baseline == null ? null : baseline.get(engine.name(), name);
+                String verdict = "";
+                if(previous != null) {
+                    if(statistics.slowerThan(previous, threshold)) {
+                        verdict = "  REGRESSION";
+                        passed = false;
+                    } else if(previous.slowerThan(statistics, threshold)) {
+                        verdict = "  improved";
+                    }
+                }
+                System.out.printf("%-16s %-6s %10.1f %21s %10s %8s%s%n", name, engine.name(), statistics.median(),
+                        String.format("[%.1f, %.1f]", statistics.low(), statistics.high()),
+                        previous == null ? "-" : String.format("%.1f", previous.median()),
+                        previous == null ? "-" : String.format("%+.1f%%", statistics.changeFrom(previous)), verdict);
+            }
+            passed &= sameOutput(name, firstRuns);
+        }
+
+        if(savePath != null) {
+            current.write(savePath);
+            System.out.println("Baseline written to " + savePath);
+        }
+        return passed;
+    }
+
+    private static boolean sameOutput(String program, Map<String, Run> runs) {
+        Run reference = null;
+        String referenceEngine = null;
+        for(Map.Entry<String, Run> entry : runs.entrySet()) {
+            Run run = entry.getValue();
+            if(reference == null) {
+                reference = run;
+                referenceEngine = entry.getKey();
+            } else if(run.exitCode() != reference.exitCode() || !run.output().equals(reference.output())) {
+                System.out.printf("%-16s output differs between %s and %s%n", program, referenceEngine, entry.getKey());
+                System.out.println(indent(referenceEngine + " (exit " + reference.exitCode() + "):", reference.output()));
+                System.out.println(indent(entry.getKey() + " (exit " + run.exitCode() + "):", run.output()));
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String indent(String header, String output) {
+        return header + System.lineSeparator() + output.lines().limit(20).map(line -> "    " + line)
+                .reduce("", (a, b) -> a + b + System.lineSeparator());
+    }
+
+    /**
+     * Runs one script to completion. Output goes to a temporary file rather than a pipe so that the measured time
+     * does not depend on how quickly this process drains the child's output.
+     */
+    private Run execute(Engine engine, Path program) throws IOException, InterruptedException {
+        File output = File.createTempFile("olox-macro", ".out");
+        try {
+            List<String> command = new ArrayList<>(engine.command());
+            command.add(program.toString());
+            ProcessBuilder builder = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(output)
+                    .redirectInput(ProcessBuilder.Redirect.from(new File(nullDevice())));
+
+            long start = System.nanoTime();
+            Process process = builder.start();
+            if(!process.waitFor(timeout, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+                return new Run(System.nanoTime() - start, -1, "timed out after " + timeout + "s");
+            }
+            long elapsed = System.nanoTime() - start;
+            return new Run(elapsed, process.exitValue(), Files.readString(output.toPath(), StandardCharsets.UTF_8));
+        } finally {
+            Files.deleteIfExists(output.toPath());
+        }
+    }
+
+    private static String nullDevice() {
+        return System.getProperty("os.name").startsWith("Windows") ? "NUL" : "/dev/null";
+    }
+}
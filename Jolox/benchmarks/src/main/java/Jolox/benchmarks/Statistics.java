@@ -0,0 +1,46 @@
+package Jolox.benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Median of a set of timings together with a 95% confidence interval for it, estimated with a percentile bootstrap.
+ * Process timings are skewed by the odd slow run, so the median and a resampled interval describe them better than a
+ * mean and a normal approximation would.
+ */
+record Statistics(double median, double low, double high, double[] samples) {
+    private static final int RESAMPLES = 2000;
+    private static final long SEED = 0x01_0C_5EEDL;
+
+    static Statistics of(double[] samples) {
+        double[] resampledMedians = new double[RESAMPLES];
+        double[] resample = new double[samples.length];
+        Random random = new Random(SEED);
+        for(int i = 0; i < RESAMPLES; i++) {
+            for(int j = 0; j < samples.length; j++) resample[j] = samples[random.nextInt(samples.length)];
+            resampledMedians[i] = median(resample);
+        }
+        Arrays.sort(resampledMedians);
+        return new Statistics(median(samples), resampledMedians[(int) (RESAMPLES * 0.025)],
+                resampledMedians[(int) (RESAMPLES * 0.975) - 1], samples.clone());
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    double changeFrom(Statistics baseline) {
+        return (median - baseline.median) / baseline.median * 100;
+    }
+
+    /**
+     * True when this is slower than {@code baseline} by more than {@code thresholdPercent} and the difference is
+     * significant, i.e. the two confidence intervals do not overlap.
+     */
+    boolean slowerThan(Statistics baseline, double thresholdPercent) {
+        return changeFrom(baseline) > thresholdPercent && low > baseline.high;
+    }
+}
@@ -0,0 +1,54 @@
+package Jolox.benchmarks;
+
+import Jolox.interpreter.Program;
+import Jolox.olox.Olox;
+import Jolox.utils.ErrorReporter;
+import Jolox.utils.RunMode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+final class Workloads {
+    private Workloads() {}
+
+    static String source(String name) {
+        try (InputStream input = Workloads.class.getResourceAsStream("/workloads/" + name + ".olx")) {
+            if(input == null) throw new IllegalArgumentException("No workload named " + name);
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static Program compile(String source) {
+        ErrorReporter errorReporter = silentReporter();
+        Program program = Olox.compile(source, RunMode.FILE, errorReporter);
+        if(program == null) throw new IllegalStateException("Workload failed to compile: " + errorReporter.getLastError());
+        return program;
+    }
+
+    static ErrorReporter silentReporter() {
+        return new ErrorReporter(new PrintWriter(Writer.nullWriter()));
+    }
+
+    /**
+     * A script made of {@code functions} copies of a small function that exercises most of the grammar.
+     */
+    static String generate(int functions) {
+        StringBuilder source = new StringBuilder();
+        for(int i = 0; i < functions; i++) {
+            source.append("fun f").append(i).append("(a, b) {\n")
+                  .append("    var c = a + b * ").append(i).append(";\n")
+                  .append("    while (c > 10) { c = c - 1; }\n")
+                  .append("    if (c == 3 and a != b) { return \"s").append(i % 50).append("\"; }\n")
+                  .append("    return c > 5 ? c : -c;\n")
+                  .append("}\n");
+        }
+        source.append("print f").append(functions - 1).append("(1, 2);\n");
+        return source.toString();
+    }
+}
@@ -0,0 +1,327 @@
+package Jolox.interpreter;
+
+import Jolox.exceptions.BreakException;
+import Jolox.exceptions.Return;
+import Jolox.exceptions.RuntimeError;
+import Jolox.lexical_scanner.TokenType;
+import Jolox.utils.RunMode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static Jolox.interpreter.AstArena.*;
+
+/**
+ * Runs code stored in an {@link AstArena} on behalf of an interpreter context, with the same semantics as the tree
+ * walking visitors. Environments, globals, output and resource accounting all belong to the context; this class only
+ * tracks which arena the running code lives in, swapping it on every call the way the context swaps resolution data.
+ */
+class ArenaInterpreter {
+    private final Interpreter context;
+    private AstArena arena;
+
+    ArenaInterpreter(Interpreter context) {
+        this.context = context;
+    }
+
+    void run(AstArena program) {
+        AstArena previous = arena;
+        try {
+            arena = program;
+            int statements = program.statements();
+            for(int i = 0; i < program.listSize(statements); i++) {
+                execute(program.listElement(statements, i));
+            }
+        } finally {
+            arena = previous;
+        }
+    }
+
+    void executeBody(AstArena code, int statements, Environment environment, Map<String, Object> globals) {
+        AstArena previousArena = arena;
+        Map<String, Object> previousGlobals = context.globals;
+        try {
+            arena = code;
+            context.globals = globals;
+            executeList(statements, environment);
+        } finally {
+            arena = previousArena;
+            context.globals = previousGlobals;
+        }
+    }
+
+    private void executeList(int statements, Environment environment) {
+        Environment previous = context.environment;
+        try {
+            context.environment = environment;
+            for(int i = 0; i < arena.listSize(statements); i++) {
+                execute(arena.listElement(statements, i));
+            }
+        } finally {
+            context.environment = previous;
+        }
+    }
+
+    private void execute(int node) {
+        switch (arena.kind(node)) {
+            case BLOCK -> {
+                context.allocate(ResourceGovernor.ENVIRONMENT_SIZE, null);
+                executeList(arena.a(node), new Environment(context.environment));
+            }
+            case SCOPELESS_BLOCK -> executeList(arena.a(node), context.environment);
+            case BREAK -> throw new BreakException();
+            case CLASS -> executeClass(node);
+            case EXPRESSION -> {
+                Object value = evaluate(arena.a(node));
+                if(context.mode == RunMode.REPL && value != null) context.out.println(value);
+            }
+            case FUNCTION_DECLARATION -> {
+                String name = arena.name(arena.a(node));
+                context.define(name, new OloxFunction(name, arena.line(node), arena, arena.b(node),
+                        context.environment, false, context.globals));
+            }
+            case IF -> {
+                if(Interpreter.isTrue(evaluate(arena.a(node)))) {
+                    execute(arena.b(node));
+                } else if(arena.c(node) != NONE) {
+                    execute(arena.c(node));
+                }
+            }
+            case IMPORT -> {
+                Stmt.Import stmt = (Stmt.Import) arena.constant(arena.a(node));
+                context.define(stmt.path.get(stmt.path.size() - 1).getLexeme(), context.importModule(stmt));
+            }
+            case PRINT -> context.out.println(evaluate(arena.a(node)));
+            case RETURN -> throw new Return(arena.a(node) == NONE ? null : evaluate(arena.a(node)));
+            case VAR -> {
+                String name = arena.name(arena.a(node));
+                Object value = null;
+                if(arena.b(node) != NONE) {
+                    value = evaluate(arena.b(node));
+                    if(context.mode == RunMode.REPL) context.out.println(name, value);
+                }
+                context.define(name, value);
+            }
+            case WHILE -> {
+                try {
+                    while(Interpreter.isTrue(evaluate(arena.a(node)))) {
+                        execute(arena.b(node));
+                        context.checkpoint(null);
+                    }
+                } catch (BreakException ignored) {
+
+                }
+            }
+            case COUNTED_LOOP -> {
+                try {
+                    if(!runCounted(node)) {
+                        while(Interpreter.isTrue(evaluate(arena.a(node)))) {
+                            execute(arena.c(node));
+                            context.checkpoint(null);
+                            evaluate(arena.b(node));
+                        }
+                    }
+                } catch (BreakException ignored) {
+
+                }
+            }
+            default -> throw new IllegalStateException("Not a statement: " + arena.kind(node));
+        }
+    }
+
+    // The arena form of Interpreter.runCounted
+    private boolean runCounted(int node) {
+        int condition = arena.a(node);
+        int counter = arena.a(condition);
+        Environment scope = context.environment.ancestor(arena.c(counter));
+        int slot = arena.d(counter);
+        TokenType comparison = arena.operator(arena.b(condition));
+        int step = arena.b(arena.b(node));
+        TokenType direction = arena.operator(arena.b(step));
+
+        if(!(scope.getAt(0, slot) instanceof Double start)) return false;
+        double current = start;
+        while(true) {
+            Object limit = evaluate(arena.c(condition));
+            if(!(limit instanceof Double bound)) {
+                binary(condition, comparison, current, limit);
+                return false;
+            }
+            if(!Interpreter.compare(comparison, current, bound)) return true;
+
+            execute(arena.c(node));
+            context.checkpoint(null);
+
+            if(!(scope.getAt(0, slot) instanceof Double value)) {
+                evaluate(arena.b(node));
+                return false;
+            }
+
+            Object amount = evaluate(arena.c(step));
+            if(!(amount instanceof Double delta)) {
+                scope.assignAt(0, slot, binary(step, direction, value, amount));
+                return false;
+            }
+            current = direction == TokenType.PLUS ? value + delta : value - delta;
+            scope.assignAt(0, slot, current);
+        }
+    }
+
+    private Object binary(int node, TokenType operator, Object left, Object right) {
+        try {
+            return context.binary(operator, left, right);
+        } catch (RuntimeError error) {
+            throw new RuntimeError(arena.tokenAt(node, operator.lexeme), error.getMessage());
+        }
+    }
+
+    private void executeClass(int node) {
+        String name = arena.name(arena.a(node));
+        Object superclass = null;
+        if(arena.b(node) != NONE) {
+            superclass = evaluate(arena.b(node));
+            if(!(superclass instanceof OloxClass)) {
+                int variable = arena.b(node);
+                throw new RuntimeError(arena.tokenAt(variable, arena.name(arena.a(variable))),
+                        "Superclass must be a defined class");
+            }
+
+            context.environment = new Environment(context.environment);
+            context.environment.define(superclass);
+        }
+
+        Map<String, OloxFunction> classMethods = methods(arena.d(node), false);
+        OloxClass metaclass = new OloxClass(null, name + " metaclass", (OloxClass) superclass, classMethods);
+        OloxClass klass = new OloxClass(metaclass, name, (OloxClass) superclass, methods(arena.c(node), true));
+
+        if(superclass != null) context.environment = context.environment.enclosing;
+        context.define(name, klass);
+    }
+
+    private Map<String, OloxFunction> methods(int list, boolean canInitialize) {
+        Map<String, OloxFunction> methods = new HashMap<>();
+        for(int i = 0; i < arena.listSize(list); i++) {
+            int method = arena.listElement(list, i);
+            String name = arena.name(arena.a(method));
+            methods.put(name, new OloxFunction(name, arena.line(method), arena, arena.b(method), context.environment,
+                    canInitialize && name.equals("init"), context.globals));
+        }
+        return methods;
+    }
+
+    private Object evaluate(int node) {
+        switch (arena.kind(node)) {
+            case ASSIGN -> {
+                Object value = evaluate(arena.b(node));
+                if(arena.c(node) != GLOBAL) {
+                    context.environment.assignAt(arena.c(node), arena.d(node), value);
+                } else {
+                    String name = arena.name(arena.a(node));
+                    if(!context.globals.containsKey(name)) throw undefinedVariable(node, name);
+                    context.globals.put(name, value);
+                }
+                return value;
+            }
+            case BINARY -> {
+                Object left = evaluate(arena.a(node));
+                Object right = evaluate(arena.c(node));
+                return binary(node, arena.operator(arena.b(node)), left, right);
+            }
+            case CALL -> {
+                Object callee = evaluate(arena.a(node));
+                int list = arena.b(node);
+                List<Object> arguments = new ArrayList<>(arena.listSize(list));
+                for(int i = 0; i < arena.listSize(list); i++) {
+                    arguments.add(evaluate(arena.listElement(list, i)));
+                }
+
+                try {
+                    return context.call(callee, arguments);
+                } catch (RuntimeError error) {
+                    if(error.getToken() == null) throw new RuntimeError(arena.tokenAt(node, ")"), error.getMessage());
+                    throw error;
+                }
+            }
+            case FUNCTION -> {
+                return new OloxFunction(null, 0, arena, node, context.environment, false, context.globals);
+            }
+            case GET -> {
+                Object object = evaluate(arena.a(node));
+                String name = arena.name(arena.b(node));
+                if(!(object instanceof OloxInstance instance)) {
+                    throw new RuntimeError(arena.tokenAt(node, name), "Only instances can have properties");
+                }
+
+                Object result = instance.get(name, arena.line(node));
+                if(result instanceof OloxFunction function && function.isGetter()) {
+                    result = function.call(context, null);
+                }
+                return result;
+            }
+            case GROUPING -> {
+                return evaluate(arena.a(node));
+            }
+            case LITERAL -> {
+                return arena.constant(arena.a(node));
+            }
+            case LOGICAL -> {
+                Object left = evaluate(arena.a(node));
+                if(arena.operator(arena.b(node)) == TokenType.OR) {
+                    if(Interpreter.isTrue(left)) return left;
+                } else {
+                    if(!Interpreter.isTrue(left)) return left;
+                }
+                return evaluate(arena.c(node));
+            }
+            case SET -> {
+                Object object = evaluate(arena.a(node));
+                String name = arena.name(arena.b(node));
+                if(!(object instanceof OloxInstance instance)) {
+                    throw new RuntimeError(arena.tokenAt(node, name), "Only instances have fields");
+                }
+
+                Object value = evaluate(arena.c(node));
+                if(instance.set(name, value)) context.allocate(ResourceGovernor.FIELD_SIZE, null);
+                return value;
+            }
+            case SUPER -> {
+                int distance = arena.c(node);
+                String method = arena.name(arena.a(node));
+                OloxClass superclass = (OloxClass) context.environment.getAt(distance, 0);
+                OloxInstance object = (OloxInstance) context.environment.getAt(distance - 1, 0);
+
+                OloxFunction function = superclass.findMethod(method);
+                if(function == null) {
+                    throw new RuntimeError(arena.tokenAt(node, method), "Undefined property " + method + ".");
+                }
+                return function.bind(object);
+            }
+            case TERNARY -> {
+                return Interpreter.isTrue(evaluate(arena.a(node))) ? evaluate(arena.b(node)) : evaluate(arena.c(node));
+            }
+            case THIS, VARIABLE -> {
+                if(arena.c(node) != GLOBAL) return context.environment.getAt(arena.c(node), arena.d(node));
+
+                String name = arena.name(arena.a(node));
+                if(!context.globals.containsKey(name)) throw undefinedVariable(node, name);
+                return context.globals.get(name);
+            }
+            case UNARY -> {
+                Object right = evaluate(arena.a(node));
+                TokenType operator = arena.operator(arena.b(node));
+                try {
+                    return context.unary(operator, right);
+                } catch (RuntimeError error) {
+                    throw new RuntimeError(arena.tokenAt(node, operator.lexeme), error.getMessage());
+                }
+            }
+            default -> throw new IllegalStateException("Not an expression: " + arena.kind(node));
+        }
+    }
+
+    private RuntimeError undefinedVariable(int node, String name) {
+        return new RuntimeError(arena.tokenAt(node, name), "Undefined variable " + name + " .");
+    }
+}
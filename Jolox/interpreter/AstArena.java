@@ -0,0 +1,420 @@
+package Jolox.interpreter;
+
+import Jolox.lexical_scanner.Token;
+import Jolox.lexical_scanner.TokenType;
+import Jolox.parser.Expr;
+import Jolox.resolver.Resolution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A resolved program stored as parallel int arrays instead of one object per node. A node is an index: its kind, up to
+ * four operands and its line live at that index in the arrays. Operands are child node indices, indices into a
+ * constant pool of names and literals, token type ordinals, resolved depths and slots, or offsets into a pool of
+ * lists, each list being its length followed by its elements. No tokens are kept; the rare runtime error that needs
+ * one gets a token made up from the line table.
+ * <p>
+ * An arena is built from a {@link Program} by {@link #lower} and run by an interpreter with
+ * {@link Interpreter#interpret(AstArena, Jolox.utils.RunMode)}. It is never modified after it is built.
+ */
+public class AstArena {
+    static final int NONE = -1;
+    // Depth of a reference the resolver left to the globals
+    static final int GLOBAL = -1;
+
+    // Statement kinds
+    static final byte BLOCK = 0;
+    static final byte BREAK = 1;
+    static final byte CLASS = 2;
+    static final byte EXPRESSION = 3;
+    static final byte FUNCTION_DECLARATION = 4;
+    static final byte IF = 5;
+    static final byte IMPORT = 6;
+    static final byte PRINT = 7;
+    static final byte RETURN = 8;
+    static final byte VAR = 9;
+    static final byte WHILE = 10;
+    static final byte COUNTED_LOOP = 25;
+    static final byte SCOPELESS_BLOCK = 26;
+
+    // Expression kinds
+    static final byte ASSIGN = 11;
+    static final byte BINARY = 12;
+    static final byte CALL = 13;
+    static final byte FUNCTION = 14;
+    static final byte GET = 15;
+    static final byte GROUPING = 16;
+    static final byte LITERAL = 17;
+    static final byte LOGICAL = 18;
+    static final byte SET = 19;
+    static final byte SUPER = 20;
+    static final byte TERNARY = 21;
+    static final byte THIS = 22;
+    static final byte UNARY = 23;
+    static final byte VARIABLE = 24;
+
+    private static final TokenType[] tokenTypes = TokenType.values();
+
+    private byte[] kinds = new byte[1024];
+    private int[] a = new int[1024];
+    private int[] b = new int[1024];
+    private int[] c = new int[1024];
+    private int[] d = new int[1024];
+    private int[] lines = new int[1024];
+    private int count = 0;
+
+    private int[] lists = new int[1024];
+    private int listsSize = 0;
+
+    private Object[] constants;
+    private int statements;
+
+    private AstArena() {}
+
+    /**
+     * Copies a resolved program into a new arena. The program can be dropped afterwards.
+     */
+    public static AstArena lower(Program program) {
+        AstArena arena = new AstArena();
+        Lowering lowering = new Lowering(arena, program.getResolution());
+        arena.statements = lowering.lowerStatements(program.getStatements());
+        arena.constants = lowering.constants.toArray();
+        arena.trim();
+        return arena;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    byte kind(int node) {
+        return kinds[node];
+    }
+
+    int a(int node) {
+        return a[node];
+    }
+
+    int b(int node) {
+        return b[node];
+    }
+
+    int c(int node) {
+        return c[node];
+    }
+
+    int d(int node) {
+        return d[node];
+    }
+
+    int line(int node) {
+        return lines[node];
+    }
+
+    Object constant(int index) {
+        return constants[index];
+    }
+
+    String name(int index) {
+        return (String) constants[index];
+    }
+
+    TokenType operator(int ordinal) {
+        return tokenTypes[ordinal];
+    }
+
+    /**
+     * The top-level statement list.
+     */
+    int statements() {
+        return statements;
+    }
+
+    int listSize(int list) {
+        return lists[list];
+    }
+
+    int listElement(int list, int index) {
+        return lists[list + 1 + index];
+    }
+
+    /**
+     * A stand-in token for reporting an error at a node.
+     */
+    Token tokenAt(int node, String lexeme) {
+        return new Token(TokenType.IDENTIFIER, lexeme, null, lines[node]);
+    }
+
+    private int add(byte kind, int line, int first, int second, int third, int fourth) {
+        if(count == kinds.length) {
+            int capacity = count * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            a = Arrays.copyOf(a, capacity);
+            b = Arrays.copyOf(b, capacity);
+            c = Arrays.copyOf(c, capacity);
+            d = Arrays.copyOf(d, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+        }
+
+        kinds[count] = kind;
+        a[count] = first;
+        b[count] = second;
+        c[count] = third;
+        d[count] = fourth;
+        lines[count] = line;
+        return count++;
+    }
+
+    private int addList(int[] elements, int size) {
+        if(listsSize + size + 1 > lists.length) {
+            lists = Arrays.copyOf(lists, Math.max(lists.length * 2, listsSize + size + 1));
+        }
+
+        int list = listsSize;
+        lists[listsSize++] = size;
+        System.arraycopy(elements, 0, lists, listsSize, size);
+        listsSize += size;
+        return list;
+    }
+
+    private void trim() {
+        kinds = Arrays.copyOf(kinds, count);
+        a = Arrays.copyOf(a, count);
+        b = Arrays.copyOf(b, count);
+        c = Arrays.copyOf(c, count);
+        d = Arrays.copyOf(d, count);
+        lines = Arrays.copyOf(lines, count);
+        lists = Arrays.copyOf(lists, listsSize);
+    }
+
+    /**
+     * Walks a resolved tree and appends its nodes to the arena, children before parents. Every visit returns the
+     * index of the node it added.
+     */
+    private static class Lowering implements Expr.Visitor<Integer>, Stmt.Visitor<Integer> {
+        private final AstArena arena;
+        private final Resolution resolution;
+        private final List<Object> constants = new ArrayList<>();
+        private final Map<Object, Integer> constantIndices = new HashMap<>();
+
+        Lowering(AstArena arena, Resolution resolution) {
+            this.arena = arena;
+            this.resolution = resolution;
+        }
+
+        int lowerStatements(List<? extends Stmt> statements) {
+            int[] nodes = new int[statements.size()];
+            for(int i = 0; i < nodes.length; i++) {
+                nodes[i] = statements.get(i).accept(this);
+            }
+            return arena.addList(nodes, nodes.length);
+        }
+
+        private int lower(Stmt stmt) {
+            return stmt == null ? NONE : stmt.accept(this);
+        }
+
+        private int lower(Expr expr) {
+            return expr == null ? NONE : expr.accept(this);
+        }
+
+        // Literals and names share one pool; a Boolean and a Double never compare equal, so they can't collide
+        private int constant(Object value) {
+            Integer index = constantIndices.get(value);
+            if(index == null) {
+                index = constants.size();
+                constants.add(value);
+                constantIndices.put(value, index);
+            }
+            return index;
+        }
+
+        private int depth(Expr expr) {
+            Integer depth = resolution.getDepth(expr);
+            return depth == null ? GLOBAL : depth;
+        }
+
+        private int slot(Expr expr) {
+            return resolution.getDepth(expr) == null ? 0 : resolution.getSlot(expr);
+        }
+
+        @Override
+        public Integer visitBlockStmt(Stmt.Block stmt) {
+            byte kind = resolution.isScopeless(stmt) ? SCOPELESS_BLOCK : BLOCK;
+            return arena.add(kind, 0, lowerStatements(stmt.statements), NONE, NONE, NONE);
+        }
+
+        @Override
+        public Integer visitBreakStmt(Stmt.Break stmt) {
+            return arena.add(BREAK, 0, NONE, NONE, NONE, NONE);
+        }
+
+        @Override
+        public Integer visitClassStmt(Stmt.Class stmt) {
+            int superclass = lower(stmt.superclass);
+            return arena.add(CLASS, stmt.name.getLine(), constant(stmt.name.getLexeme()), superclass,
+                    lowerStatements(stmt.methods), lowerStatements(stmt.classMethods));
+        }
+
+        @Override
+        public Integer visitCountedLoopStmt(Stmt.CountedLoop stmt) {
+            int condition = lower(stmt.condition);
+            int increment = lower(stmt.increment);
+            return arena.add(COUNTED_LOOP, 0, condition, increment, lower(stmt.body), NONE);
+        }
+
+        @Override
+        public Integer visitExpressionStmt(Stmt.Expression stmt) {
+            return arena.add(EXPRESSION, 0, lower(stmt.expression), NONE, NONE, NONE);
+        }
+
+        @Override
+        public Integer visitFunctionStmt(Stmt.Function stmt) {
+            int function = lowerFunction(stmt.function, stmt.name);
+            return arena.add(FUNCTION_DECLARATION, stmt.name.getLine(), constant(stmt.name.getLexeme()), function,
+                    NONE, NONE);
+        }
+
+        @Override
+        public Integer visitIfStmt(Stmt.If stmt) {
+            return arena.add(IF, 0, lower(stmt.condition), lower(stmt.thenBranch), lower(stmt.elseBranch), NONE);
+        }
+
+        // Imports are rare and are handed to the module loader as they are, so the statement itself is the constant
+        @Override
+        public Integer visitImportStmt(Stmt.Import stmt) {
+            return arena.add(IMPORT, stmt.keyword.getLine(), constant(stmt), NONE, NONE, NONE);
+        }
+
+        @Override
+        public Integer visitPrintStmt(Stmt.Print stmt) {
+            return arena.add(PRINT, 0, lower(stmt.expression), NONE, NONE, NONE);
+        }
+
+        @Override
+        public Integer visitReturnStmt(Stmt.Return stmt) {
+            return arena.add(RETURN, stmt.keyword.getLine(), lower(stmt.value), NONE, NONE, NONE);
+        }
+
+        @Override
+        public Integer visitVarStmt(Stmt.Var stmt) {
+            return arena.add(VAR, stmt.name.getLine(), constant(stmt.name.getLexeme()), lower(stmt.initializer),
+                    NONE, NONE);
+        }
+
+        @Override
+        public Integer visitWhileStmt(Stmt.While stmt) {
+            return arena.add(WHILE, 0, lower(stmt.condition), lower(stmt.body), NONE, NONE);
+        }
+
+        // Only generator bodies have yields, and those are never lowered
+        @Override
+        public Integer visitYieldStmt(Stmt.Yield stmt) {
+            throw new IllegalStateException("Yield outside of a generator body");
+        }
+
+        @Override
+        public Integer visitAssignExpr(Expr.Assign expr) {
+            return arena.add(ASSIGN, expr.name.getLine(), constant(expr.name.getLexeme()), lower(expr.value),
+                    depth(expr), slot(expr));
+        }
+
+        @Override
+        public Integer visitBinaryExpr(Expr.Binary expr) {
+            int left = lower(expr.left);
+            int right = lower(expr.right);
+            return arena.add(BINARY, expr.operator.getLine(), left, expr.operator.getType().ordinal(), right, NONE);
+        }
+
+        @Override
+        public Integer visitCallExpr(Expr.Call expr) {
+            int callee = lower(expr.callee);
+            int[] arguments = new int[expr.arguments.size()];
+            for(int i = 0; i < arguments.length; i++) {
+                arguments[i] = lower(expr.arguments.get(i));
+            }
+            return arena.add(CALL, expr.paren.getLine(), callee, arena.addList(arguments, arguments.length),
+                    NONE, NONE);
+        }
+
+        @Override
+        public Integer visitFunctionExpr(Expr.Function expr) {
+            return lowerFunction(expr, null);
+        }
+
+        // A getter has no parameter list at all, which is recorded as an arity of -1. A generator keeps its tree
+        // form, since OloxGenerator steps through statements, and its body isn't lowered.
+        private int lowerFunction(Expr.Function function, Token name) {
+            int arity = function.parameters == null ? NONE : function.parameters.size();
+            int line = name == null ? 0 : name.getLine();
+            int constantName = name == null ? NONE : constant(name.getLexeme());
+            if(!resolution.getSuspensions(function).isEmpty()) {
+                return arena.add(FUNCTION, line, NONE, arity, constantName,
+                        constant(new OloxGenerator.Code(function, resolution)));
+            }
+            return arena.add(FUNCTION, line, lowerStatements(function.body), arity, constantName, NONE);
+        }
+
+        @Override
+        public Integer visitGetExpr(Expr.Get expr) {
+            return arena.add(GET, expr.name.getLine(), lower(expr.object), constant(expr.name.getLexeme()),
+                    NONE, NONE);
+        }
+
+        @Override
+        public Integer visitGroupingExpr(Expr.Grouping expr) {
+            return arena.add(GROUPING, 0, lower(expr.expression), NONE, NONE, NONE);
+        }
+
+        @Override
+        public Integer visitLiteralExpr(Expr.Literal expr) {
+            return arena.add(LITERAL, 0, constant(expr.value), NONE, NONE, NONE);
+        }
+
+        @Override
+        public Integer visitLogicalExpr(Expr.Logical expr) {
+            int left = lower(expr.left);
+            int right = lower(expr.right);
+            return arena.add(LOGICAL, expr.operator.getLine(), left, expr.operator.getType().ordinal(), right, NONE);
+        }
+
+        @Override
+        public Integer visitSetExpr(Expr.Set expr) {
+            int object = lower(expr.object);
+            return arena.add(SET, expr.name.getLine(), object, constant(expr.name.getLexeme()), lower(expr.value),
+                    NONE);
+        }
+
+        @Override
+        public Integer visitSuperExpr(Expr.Super expr) {
+            return arena.add(SUPER, expr.method.getLine(), constant(expr.method.getLexeme()), NONE, depth(expr),
+                    NONE);
+        }
+
+        @Override
+        public Integer visitTernaryExpr(Expr.Ternary expr) {
+            return arena.add(TERNARY, 0, lower(expr.condition), lower(expr.left), lower(expr.right), NONE);
+        }
+
+        @Override
+        public Integer visitThisExpr(Expr.This expr) {
+            return arena.add(THIS, expr.keyword.getLine(), constant("this"), NONE, depth(expr), slot(expr));
+        }
+
+        @Override
+        public Integer visitUnaryExpr(Expr.Unary expr) {
+            return arena.add(UNARY, expr.operator.getLine(), lower(expr.right), expr.operator.getType().ordinal(),
+                    NONE, NONE);
+        }
+
+        @Override
+        public Integer visitVariableExpr(Expr.Variable expr) {
+            return arena.add(VARIABLE, expr.name.getLine(), constant(expr.name.getLexeme()), NONE, depth(expr),
+                    slot(expr));
+        }
+    }
+}
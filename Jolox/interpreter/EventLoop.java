@@ -0,0 +1,155 @@
+package Jolox.interpreter;
+
+import Jolox.exceptions.RuntimeError;
+import Jolox.profiler.EventLoopEvent;
+import Jolox.profiler.Profiler;
+
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the callbacks of a script's timers and asynchronous file operations once the script's own statements have
+ * finished, one at a time on the thread that ran the script, until nothing is left to wait for. File operations
+ * complete on the JVM's I/O threads, which only queue the callback, so scripts never share a context between threads.
+ * Tasks the script spawned are joined whenever the loop runs dry, and the loop runs again for any operation they
+ * started, so those complete as well. A runtime error in the script or a callback ends the loop and is reported like
+ * any other. The context then drops its loop, with the timers still queued and the operations still in flight, and
+ * creates a new one if it runs another script, so none of their callbacks ever run.
+ * <p>
+ * The loop keeps statistics for embedders and Flight Recorder: how many callbacks it ran, the most that were waiting
+ * at once, and how long they waited between becoming ready and starting to run.
+ */
+public class EventLoop {
+    public record Statistics(long callbacks, int maxQueueDepth, long meanLatencyNanos, long maxLatencyNanos) {
+        @Override
+        public String toString() {
+            return String.format("%d callbacks, at most %d queued, latency %.3f ms mean and %.3f ms max",
+                    callbacks, maxQueueDepth, meanLatencyNanos / 1e6, maxLatencyNanos / 1e6);
+        }
+    }
+
+    /**
+     * A function to call with the given arguments once {@link #readyAt} has passed. Ties run in the order they were
+     * queued.
+     */
+    private record Callback(OloxCallable function, List<Object> arguments, long readyAt, long sequence)
+            implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(readyAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            Callback callback = (Callback) other;
+            if(readyAt != callback.readyAt) return Long.compare(readyAt - callback.readyAt, 0);
+            return Long.compare(sequence, callback.sequence);
+        }
+    }
+
+    private final DelayQueue<Callback> queue = new DelayQueue<>();
+    // Operations in flight plus callbacks queued, so the loop is done once it has taken as many as there were
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private long callbacks;
+    private int maxQueueDepth;
+    private long totalLatency;
+    private long maxLatency;
+
+    static void defineNatives(Interpreter interpreter) {
+        interpreter.globals.put("after", new NativeFunction(2, (caller, arguments) -> {
+            if(!(arguments.get(0) instanceof Double millis) || millis < 0) {
+                throw new RuntimeError(null, "Delay must be a non-negative number of milliseconds");
+            }
+            caller.getEventLoop().schedule(callback(arguments.get(1), 0), (long) (millis * 1e6));
+            return null;
+        }));
+    }
+
+    /**
+     * Checks that a native was handed a function taking the given number of arguments to call back.
+     */
+    static OloxCallable callback(Object function, int arity) {
+        if(!(function instanceof OloxCallable callable) || callable.arity() != arity) {
+            throw new RuntimeError(null, "Expected a callback taking " + arity + " arguments");
+        }
+        return callable;
+    }
+
+    void schedule(OloxCallable function, long delayNanos) {
+        pending.incrementAndGet();
+        queue.add(new Callback(function, List.of(), System.nanoTime() + delayNanos, sequence.getAndIncrement()));
+    }
+
+    /**
+     * Registers an operation that will call {@link #complete} when it is done, from any thread. The loop keeps
+     * running until it has.
+     */
+    void begin() {
+        pending.incrementAndGet();
+    }
+
+    /**
+     * Queues the callback of an operation registered with {@link #begin}.
+     */
+    void complete(OloxCallable function, List<Object> arguments) {
+        queue.add(new Callback(function, arguments, System.nanoTime(), sequence.getAndIncrement()));
+    }
+
+    /**
+     * Whether an operation is in flight or a callback is queued.
+     */
+    boolean hasPending() {
+        return pending.get() > 0;
+    }
+
+    /**
+     * Runs callbacks until none are queued and no operation is in flight.
+     */
+    void run(Interpreter interpreter) {
+        if(pending.get() == 0) return;
+
+        EventLoopEvent event = Profiler.recording() ? new EventLoopEvent() : null;
+        if(event != null) event.begin();
+        long callbacksBefore = callbacks;
+        long latencyBefore = totalLatency;
+        try {
+            while(pending.get() > 0) {
+                Callback callback = queue.take();
+                pending.decrementAndGet();
+
+                long latency = System.nanoTime() - callback.readyAt();
+                callbacks++;
+                totalLatency += latency;
+                maxLatency = Math.max(maxLatency, latency);
+                maxQueueDepth = Math.max(maxQueueDepth, queue.size() + 1);
+
+                interpreter.call(callback.function(), callback.arguments());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeError(null, "Interrupted while waiting for callbacks");
+        } finally {
+            if(event != null && event.shouldCommit()) {
+                long ran = callbacks - callbacksBefore;
+                event.callbacks = ran;
+                event.maxQueueDepth = maxQueueDepth;
+                event.meanLatency = ran == 0 ? 0 : (totalLatency - latencyBefore) / ran;
+                event.maxLatency = maxLatency;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * What the loop has done so far. Only exact while no script is running in the context it belongs to, and started
+     * again from zero after a script fails.
+     */
+    public Statistics statistics() {
+        return new Statistics(callbacks, maxQueueDepth, callbacks == 0 ? 0 : totalLatency / callbacks, maxLatency);
+    }
+}
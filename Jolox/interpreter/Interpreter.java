@@ -6,43 +6,209 @@ import Jolox.exceptions.Return;
 import Jolox.exceptions.RuntimeError;
 import Jolox.lexical_scanner.Token;
 import Jolox.lexical_scanner.TokenType;
+import Jolox.olox.ModuleLoader;
+import Jolox.profiler.CallStack;
+import Jolox.profiler.Profiler;
+import Jolox.resolver.Resolution;
 import Jolox.utils.ErrorReporter;
+import Jolox.utils.FlushPolicy;
 import Jolox.utils.RunMode;
 
+import java.io.Writer;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A single interpreter context. Each instance owns its globals, environment chain and error state, so separate
+ * instances can run scripts concurrently on separate threads; a single instance must only be used by one thread.
+ * Tasks spawned by a script run in forked contexts that share the globals of their parent, while imported modules run
+ * in contexts with globals of their own.
+ */
 public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
-    final Map<String, Object> globals = new HashMap<>();
-    private Environment environment;
-    private final Map<Expr, Integer> locals = new HashMap<>();
-    private final Map<Expr, Integer> slots = new HashMap<>();
-
-    private RunMode mode = RunMode.FILE;
-
-    private Interpreter(){
-        globals.put("clock", new OloxCallable() {
-            @Override
-            public int arity() {
-                return 0;
-            }
+    // The globals of the module whose code is running, swapped along with the resolution on every call
+    Map<String, Object> globals;
+    private final Map<String, OloxModule> modules;
+    // Tasks spawned by the script and not yet joined, shared by every context of a run
+    private final Queue<OloxTask> tasks;
+    private Path modulePath = Path.of("");
+    Environment environment;
+    Resolution resolution;
+    private final ErrorReporter errorReporter;
+    // Shadow stack of running Olox functions, null unless profiling
+    private final CallStack callStack;
+    // Limits shared by every context of a run, and the work done here that has not been charged to them yet
+    private ResourceGovernor governor;
+    // Runs functions and programs stored in an AstArena, created the first time one is called
+    private ArenaInterpreter arenaInterpreter;
+    // The context that runs the script and owns its event loop, which forks and module contexts look up through it
+    private final Interpreter owner;
+    // Callbacks of timers and file operations, created the first time a script starts one
+    private volatile EventLoop eventLoop;
+    private int pendingFuel;
+    private long pendingMemory;
+
+    RunMode mode = RunMode.FILE;
+    Output out = Output.stdout(FlushPolicy.ON_SIZE);
+
+    public Interpreter(ErrorReporter errorReporter) {
+        this.errorReporter = errorReporter;
+        this.globals = Collections.synchronizedMap(new HashMap<>());
+        this.modules = new ConcurrentHashMap<>();
+        this.tasks = new ConcurrentLinkedQueue<>();
+        this.callStack = Profiler.ENABLED ? Profiler.newCallStack() : null;
+        this.governor = ResourceGovernor.unlimited();
+        this.owner = this;
+        defineNatives();
+    }
+
+    private Interpreter(Interpreter parent, Map<String, Object> globals, CallStack callStack) {
+        this.globals = globals;
+        this.callStack = callStack;
+        this.modules = parent.modules;
+        this.tasks = parent.tasks;
+        this.modulePath = parent.modulePath;
+        this.resolution = parent.resolution;
+        this.errorReporter = parent.errorReporter;
+        this.governor = parent.governor;
+        this.owner = parent.owner;
+        this.mode = parent.mode;
+        this.out = parent.out;
+    }
+
+    private void defineNatives() {
+        globals.put("clock", new NativeFunction(0,
+                (interpreter, arguments) -> (double)System.currentTimeMillis() / 1000.0));
+        OloxTask.defineNatives(this);
+        OloxIterator.defineNatives(this);
+        OloxReader.defineNatives(this);
+        OloxSequence.defineNatives(this);
+        EventLoop.defineNatives(this);
+        OloxFiles.defineNatives(this);
+    }
+
+    /**
+     * Creates a context for a spawned task. It shares this context's globals and resolution data but has its own
+     * environment chain, so it can run on another thread.
+     */
+    Interpreter fork() {
+        return new Interpreter(this, globals, Profiler.ENABLED ? Profiler.newCallStack() : null);
+    }
+
+    /**
+     * Registers a task spawned from this context, so the script waits for it before it finishes.
+     */
+    void track(OloxTask task) {
+        tasks.add(task);
+    }
+
+    CallStack getCallStack() {
+        return callStack;
+    }
+
+    /**
+     * Returns the event loop that runs callbacks once the script has finished. Contexts forked or created for modules
+     * share the loop of the context that runs the script.
+     */
+    public EventLoop getEventLoop() {
+        if(owner != this) return owner.getEventLoop();
+
+        // Tasks on other threads may start the first operation
+        synchronized (this) {
+            if(eventLoop == null) eventLoop = new EventLoop();
+            return eventLoop;
+        }
+    }
 
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return (double)System.currentTimeMillis() / 1000.0;
-            }
+    ArenaInterpreter getArenaInterpreter() {
+        if(arenaInterpreter == null) arenaInterpreter = new ArenaInterpreter(this);
+        return arenaInterpreter;
+    }
 
-            @Override
-            public String toString() { return "<native fn>"; }
-        });
+    /**
+     * Sets the directory that module paths in import statements are relative to.
+     */
+    public void setModulePath(Path modulePath) {
+        this.modulePath = modulePath;
+    }
+
+    /**
+     * Resolves a path a script passed to a native against the same directory as its imports.
+     */
+    Path resolvePath(String path) {
+        return modulePath.resolve(path);
+    }
+
+    /**
+     * Sets the limits scripts run by this context are held to. Contexts forked or created for modules afterwards
+     * share them.
+     */
+    public void setGovernor(ResourceGovernor governor) {
+        this.governor = governor;
+    }
+
+    public ResourceGovernor getGovernor() {
+        return governor;
     }
 
-    private static final Interpreter instance = new Interpreter();
+    /**
+     * Spends one unit of fuel. Called at loop back-edges and calls; the governor is only consulted once per slice.
+     */
+    void checkpoint(Token where) {
+        if(++pendingFuel >= ResourceGovernor.FUEL_SLICE) chargeGovernor(where);
+    }
 
-    public static Interpreter getInstance() {
-        return instance;
+    /**
+     * Accounts for memory the script caused the interpreter to allocate.
+     */
+    void allocate(int bytes, Token where) {
+        pendingMemory += bytes;
+        if(pendingMemory >= ResourceGovernor.MEMORY_SLICE) chargeGovernor(where);
+    }
+
+    private void chargeGovernor(Token where) {
+        // Set when the script that spawned this task has failed, see OloxTask.cancel
+        if(Thread.currentThread().isInterrupted()) throw new RuntimeError(where, "Task was cancelled");
+
+        int fuel = pendingFuel;
+        long memory = pendingMemory;
+        pendingFuel = 0;
+        pendingMemory = 0;
+        governor.charge(fuel, memory, where);
+    }
+
+    /**
+     * Sends output to the writer, flushing it whenever the buffer fills and when a script finishes.
+     */
+    public void setOutput(Writer writer) {
+        this.out = new Output(writer, FlushPolicy.ON_SIZE);
+    }
+
+    public void setOutput(Output out) {
+        this.out = out;
+    }
+
+    public Object getGlobal(String name) {
+        return globals.get(name);
+    }
+
+    public void setGlobal(String name, Object value) {
+        globals.put(name, value);
+    }
+
+    public Set<String> getGlobalNames() {
+        synchronized (globals) {
+            return new HashSet<>(globals.keySet());
+        }
     }
 
     @Override
@@ -73,13 +239,13 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         }
 
         Object value = evaluate(expr.value);
-        ((OloxInstance) object).set(expr.name, value);
+        if(((OloxInstance) object).set(expr.name.getLexeme(), value)) allocate(ResourceGovernor.FIELD_SIZE, expr.name);
         return value;
     }
 
     @Override
     public Object visitSuperExpr(Expr.Super expr) {
-        int distance = locals.get(expr);
+        int distance = resolution.getDepth(expr);
         OloxClass superclass = (OloxClass)environment.getAt(distance, 0);
         OloxInstance object = (OloxInstance)environment.getAt(distance - 1, 0);
 
@@ -106,12 +272,23 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     public Object visitUnaryExpr(Expr.Unary expr) {
         Object right = evaluate(expr.right);
 
-        switch (expr.operator.getType()) {
+        try {
+            return unary(expr.operator.getType(), right);
+        } catch (RuntimeError error) {
+            throw new RuntimeError(expr.operator, error.getMessage());
+        }
+    }
+
+    /**
+     * Applies a unary operator. Errors carry no token; the caller attributes them to the operator.
+     */
+    Object unary(TokenType operator, Object right) {
+        switch (operator) {
             case BANG -> {
                 return !isTrue(right);
             }
             case MINUS -> {
-                checkNumberOperand(expr.operator, right);
+                checkNumberOperand(right);
                 return - (double)right;
             }
         }
@@ -125,9 +302,9 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     }
 
     public Object lookUpVariable(Token name, Expr expr) {
-        Integer distance = locals.get(expr);
+        Integer distance = resolution.getDepth(expr);
         if(distance != null) {
-            return environment.getAt(distance, slots.get(expr));
+            return environment.getAt(distance, resolution.getSlot(expr));
         } else {
             if(globals.containsKey(name.getLexeme())) {
                 return globals.get(name.getLexeme());
@@ -137,57 +314,37 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         }
     }
 
-    private void checkNumberOperand(Token operator, Object operand) {
+    private void checkNumberOperand(Object operand) {
         if(operand instanceof Double) return;
-        throw new RuntimeError(operator, "Operand must be a number");
+        throw new RuntimeError(null, "Operand must be a number");
     }
 
-    private boolean isTrue(Object object) {
+    static boolean isTrue(Object object) {
         if(object == null) return false;
         if(object instanceof Boolean) return (boolean)object;
         return true;
     }
 
-    private boolean isEqual(Object left, Object right) {
+    private static boolean isEqual(Object left, Object right) {
         if(left == null && right == null) return true;
         if(left == null) return false;
 
         return left.equals(right);
     }
 
-    private String stringify(Object object) {
-        if(object == null) return "nil";
-
-        if(object instanceof Double) {
-            String text = object.toString();
-            if(text.endsWith(".0")) {
-                text = text.substring(0, text.length() - 2);
-            }
-
-            return text;
-        }
-
-        return object.toString();
-    }
-
     @Override
     public Object visitGroupingExpr(Expr.Grouping expr) {
         return evaluate(expr.expression);
     }
 
-    private Object evaluate(Expr expr) {
+    Object evaluate(Expr expr) {
         return expr.accept(this);
     }
 
-    private void execute(Stmt stmt) {
+    void execute(Stmt stmt) {
         stmt.accept(this);
     }
 
-    public void resolve(Expr expr, int depth, int slot) {
-        locals.put(expr, depth);
-        slots.put(expr, slot);
-    }
-
     public void executeBlock(List<Stmt> statements, Environment environment) {
         Environment previous = this.environment;
         try {
@@ -201,8 +358,28 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         }
     }
 
+    void executeBlock(List<Stmt> statements, Environment environment, Resolution resolution,
+                      Map<String, Object> globals) {
+        Resolution previousResolution = this.resolution;
+        Map<String, Object> previousGlobals = this.globals;
+        try {
+            this.resolution = resolution;
+            this.globals = globals;
+            executeBlock(statements, environment);
+        } finally {
+            this.resolution = previousResolution;
+            this.globals = previousGlobals;
+        }
+    }
+
     @Override
     public Void visitBlockStmt(Stmt.Block stmt) {
+        if(resolution.isScopeless(stmt)) {
+            executeBlock(stmt.statements, environment);
+            return null;
+        }
+
+        allocate(ResourceGovernor.ENVIRONMENT_SIZE, null);
         executeBlock(stmt.statements, new Environment(environment));
         return null;
     }
@@ -229,15 +406,15 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
 
         for(Stmt.Function classMethod: stmt.classMethods) {
-            OloxFunction function = new OloxFunction(classMethod.name.getLexeme(), classMethod.function,
-                    environment, false);
+            OloxFunction function = new OloxFunction(classMethod.name.getLexeme(), classMethod.name.getLine(),
+                    classMethod.function, environment, false, resolution, globals);
             classMethods.put(classMethod.name.getLexeme(), function);
         }
 
         OloxClass metaclass = new OloxClass(null, stmt.name.getLexeme() + " metaclass", (OloxClass) superclass, classMethods);
         for(Stmt.Function method : stmt.methods) {
-            OloxFunction function = new OloxFunction(method.name.getLexeme(), method.function, environment,
-                    method.name.getLexeme().matches("init"));
+            OloxFunction function = new OloxFunction(method.name.getLexeme(), method.name.getLine(), method.function,
+                    environment, method.name.getLexeme().matches("init"), resolution, globals);
             methods.put(method.name.getLexeme(), function);
         }
 
@@ -248,24 +425,101 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitCountedLoopStmt(Stmt.CountedLoop stmt) {
+        try {
+            if(!runCounted(stmt)) {
+                while(isTrue(evaluate(stmt.condition))) {
+                    execute(stmt.body);
+                    checkpoint(null);
+                    evaluate(stmt.increment);
+                }
+            }
+        } catch (BreakException ignored) {
+
+        }
+        return null;
+    }
+
+    /**
+     * Runs a counted loop without evaluating its condition and increment as expressions. The bound and step are still
+     * evaluated every iteration, in the same order as before. Returns false, with the condition next to be tested, if
+     * the counter or the step stops being a number, leaving the caller to finish the loop the general way.
+     * <p>
+     * The counter stays boxed in its variable's slot. The body reads it from there, and so does any closure the body
+     * creates, so every new value has to be stored back as a Double before the body runs again: one allocation per
+     * iteration, as with the assignment in the desugared loop. What is saved is walking the condition and increment,
+     * and reading the counter back before each test, since the loop knows the value it stored. The slot is read once
+     * after the body, which may have assigned the counter.
+     */
+    private boolean runCounted(Stmt.CountedLoop stmt) {
+        Expr.Variable counter = (Expr.Variable) stmt.condition.left;
+        Environment scope = environment.ancestor(resolution.getDepth(counter));
+        int slot = resolution.getSlot(counter);
+        TokenType comparison = stmt.condition.operator.getType();
+        Expr.Binary step = (Expr.Binary) stmt.increment.value;
+
+        if(!(scope.getAt(0, slot) instanceof Double start)) return false;
+        double current = start;
+        while(true) {
+            Object limit = evaluate(stmt.condition.right);
+            if(!(limit instanceof Double bound)) {
+                binary(stmt.condition.operator, current, limit);
+                return false;
+            }
+            if(!compare(comparison, current, bound)) return true;
+
+            execute(stmt.body);
+            checkpoint(null);
+
+            if(!(scope.getAt(0, slot) instanceof Double value)) {
+                evaluate(stmt.increment);
+                return false;
+            }
+
+            Object amount = evaluate(step.right);
+            if(!(amount instanceof Double delta)) {
+                // Only a string step gets past binary, and the counter is a string from then on
+                scope.assignAt(0, slot, binary(step.operator, value, amount));
+                return false;
+            }
+            current = step.operator.getType() == TokenType.PLUS ? value + delta : value - delta;
+            scope.assignAt(0, slot, current);
+        }
+    }
+
+    static boolean compare(TokenType comparison, double left, double right) {
+        return switch (comparison) {
+            case LESS -> left < right;
+            case LESS_EQUAL -> left <= right;
+            case GREATER -> left > right;
+            default -> left >= right;
+        };
+    }
+
     @Override
     public Void visitExpressionStmt(Stmt.Expression stmt) {
         Object value = evaluate(stmt.expression);
-        if(this.mode == RunMode.REPL && value != null) System.out.println(stringify(value));
+        if(this.mode == RunMode.REPL && value != null) out.println(value);
         return null;
     }
 
     @Override
     public Void visitFunctionStmt(Stmt.Function stmt) {
-        define(stmt.name, new OloxFunction(stmt.name.getLexeme() ,stmt.function, environment, false));
+        define(stmt.name, new OloxFunction(stmt.name.getLexeme(), stmt.name.getLine(), stmt.function, environment, false,
+                resolution, globals));
         return null;
     }
 
     public void define(Token name, Object value) {
+        define(name.getLexeme(), value);
+    }
+
+    void define(String name, Object value) {
         if(environment != null) {
             environment.define(value);
         } else {
-            globals.put(name.getLexeme(), value);
+            globals.put(name, value);
         }
     }
 
@@ -279,10 +533,48 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) {
+        define(stmt.path.get(stmt.path.size() - 1), importModule(stmt));
+        return null;
+    }
+
+    /**
+     * Runs a module the first time it is imported into this context and returns the same module on later imports.
+     * The module is registered before it runs, so an import cycle sees the partly initialized module.
+     */
+    OloxModule importModule(Stmt.Import stmt) {
+        String name = ModuleLoader.nameOf(stmt);
+        OloxModule module = modules.get(name);
+        if(module != null) return module;
+
+        Program program = ModuleLoader.load(modulePath, stmt);
+        // The module runs on this thread, so it shares this context's call stack
+        Interpreter context = new Interpreter(this, Collections.synchronizedMap(new HashMap<>()), callStack);
+        context.mode = RunMode.FILE;
+        context.defineNatives();
+
+        module = new OloxModule(name, context.globals);
+        OloxModule existing = modules.putIfAbsent(name, module);
+        if(existing != null) return existing;
+
+        context.resolution = program.getResolution();
+        if(callStack != null) callStack.push("<module " + name + ">", 0);
+        try {
+            for(Stmt statement : program.getStatements()) {
+                context.execute(statement);
+            }
+        } finally {
+            if(callStack != null) callStack.pop();
+        }
+
+        return module;
+    }
+
     @Override
     public Void visitPrintStmt(Stmt.Print stmt) {
         Object value = evaluate(stmt.expression);
-        System.out.println(stringify(value));
+        out.println(value);
         return null;
     }
 
@@ -299,7 +591,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         Object value = null;
         if(stmt.initializer != null) {
             value = evaluate(stmt.initializer);
-            if(this.mode == RunMode.REPL) System.out.println(stmt.name.getLexeme() + " = " + stringify(value));
+            if(this.mode == RunMode.REPL) out.println(stmt.name.getLexeme(), value);
         }
        define(stmt.name, value);
         return null;
@@ -310,6 +602,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         try {
             while (isTrue(evaluate(stmt.condition))) {
                 execute(stmt.body);
+                checkpoint(null);
             }
         } catch (BreakException ignored) {
 
@@ -317,13 +610,19 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return null;
     }
 
+    // Yield statements only run inside an OloxGenerator, which steps through them itself
+    @Override
+    public Void visitYieldStmt(Stmt.Yield stmt) {
+        throw new IllegalStateException("Yield outside of a generator body");
+    }
+
     @Override
     public Object visitAssignExpr(Expr.Assign expr) {
         Object value = evaluate(expr.value);
 
-        Integer distance = locals.get(expr);
+        Integer distance = resolution.getDepth(expr);
         if(distance != null) {
-            environment.assignAt(distance, slots.get(expr), value);
+            environment.assignAt(distance, resolution.getSlot(expr), value);
         }
         else {
             if(globals.containsKey(expr.name.getLexeme())) {
@@ -340,7 +639,22 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         Object left = evaluate(expr.left);
         Object right = evaluate(expr.right);
 
-        switch (expr.operator.getType()) {
+        return binary(expr.operator, left, right);
+    }
+
+    private Object binary(Token operator, Object left, Object right) {
+        try {
+            return binary(operator.getType(), left, right);
+        } catch (RuntimeError error) {
+            throw new RuntimeError(operator, error.getMessage());
+        }
+    }
+
+    /**
+     * Applies a binary operator. Errors carry no token; the caller attributes them to the operator.
+     */
+    Object binary(TokenType operator, Object left, Object right) {
+        switch (operator) {
             case BANG_EQUAL -> {
                 return !isEqual(left, right);
             }
@@ -348,23 +662,23 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                 return isEqual(left, right);
             }
             case GREATER -> {
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(left, right);
                 return (double)left > (double)right;
             }
             case GREATER_EQUAL -> {
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(left, right);
                 return (double)left >= (double)right;
             }
             case LESS -> {
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(left, right);
                 return (double)left < (double)right;
             }
             case LESS_EQUAL -> {
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(left, right);
                 return (double)left <= (double)right;
             }
             case MINUS -> {
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(left, right);
                 return (double)left - (double)right;
             }
             case PLUS -> {
@@ -373,18 +687,23 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                 }
 
                 if (left instanceof String || right instanceof String) {
-                    return stringify(left) + stringify(right);
+                    StringBuilder text = new StringBuilder();
+                    Output.append(text, left);
+                    Output.append(text, right);
+                    String result = text.toString();
+                    allocate(ResourceGovernor.STRING_HEADER_SIZE + 2 * result.length(), null);
+                    return result;
                 }
 
-                throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings");
+                throw new RuntimeError(null, "Operands must be two numbers or two strings");
             }
             case SLASH -> {
-                checkNumberOperands(expr.operator, left, right);
-                if((double)right == 0) throw new RuntimeError(expr.operator, "Arithmetic Error: Division by Zero");
+                checkNumberOperands(left, right);
+                if((double)right == 0) throw new RuntimeError(null, "Arithmetic Error: Division by Zero");
                 return (double)left / (double)right;
             }
             case STAR -> {
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(left, right);
                 return (double)left * (double)right;
             }
         }
@@ -401,20 +720,32 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             arguments.add(evaluate(argument));
         }
 
+        try {
+            return call(callee, arguments);
+        } catch (RuntimeError error) {
+            // Natives don't know where they were called from, so their errors are attributed to the call site
+            if(error.getToken() == null) throw new RuntimeError(expr.paren, error.getMessage());
+            throw error;
+        }
+    }
+
+    Object call(Object callee, List<Object> arguments) {
         if(!(callee instanceof OloxCallable function)) {
-            throw new RuntimeError(expr.paren, "Only functions and classes are callable");
+            throw new RuntimeError(null, "Only functions and classes are callable");
         }
 
         if (arguments.size() != function.arity()) {
-            throw new RuntimeError(expr.paren, "Expected " + function.arity() + " arguments but got " +
+            throw new RuntimeError(null, "Expected " + function.arity() + " arguments but got " +
                     arguments.size());
         }
+
+        checkpoint(null);
         return function.call(this, arguments);
     }
 
     @Override
     public Object visitFunctionExpr(Expr.Function expr) {
-        return new OloxFunction(null, expr, environment, false);
+        return new OloxFunction(null, 0, expr, environment, false, resolution, globals);
     }
 
     @Override
@@ -432,19 +763,101 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         throw new RuntimeError(expr.name, "Only instances can have properties");
     }
 
-    private void checkNumberOperands(Token operator, Object left, Object right) {
+    private void checkNumberOperands(Object left, Object right) {
         if(left instanceof Double && right instanceof Double) return;
-        throw new RuntimeError(operator, "Operands must be numbers");
+        throw new RuntimeError(null, "Operands must be numbers");
     }
 
-    public void interpret(List<Stmt> statements, RunMode mode) {
-        this.mode = mode;
-        try {
-            for(Stmt statement : statements) {
+    /**
+     * Runs a program stored in an arena. Behaves exactly like {@link #interpret(Program, RunMode)}.
+     */
+    public void interpret(AstArena program, RunMode mode) {
+        runScript(mode, () -> getArenaInterpreter().run(program));
+    }
+
+    public void interpret(Program program, RunMode mode) {
+        this.resolution = program.getResolution();
+        runScript(mode, () -> {
+            for(Stmt statement : program.getStatements()) {
                 execute(statement);
             }
+        });
+    }
+
+    /**
+     * Runs a program like {@link #interpret(Program, RunMode)} and returns the value of its last statement if that is
+     * an expression statement, as script engines do. Returns null otherwise, or if the script failed.
+     */
+    public Object interpretValue(Program program, RunMode mode) {
+        this.resolution = program.getResolution();
+        List<Stmt> statements = program.getStatements();
+        Object[] value = new Object[1];
+        runScript(mode, () -> {
+            for(int i = 0; i < statements.size(); i++) {
+                if(i == statements.size() - 1 && statements.get(i) instanceof Stmt.Expression last) {
+                    value[0] = evaluate(last.expression);
+                } else {
+                    execute(statements.get(i));
+                }
+            }
+        });
+        return errorReporter.hasRuntimeError() ? null : value[0];
+    }
+
+    /**
+     * Runs a script's statements and then its callbacks, reporting a runtime error from either, and settles the
+     * script's output and governor accounts however it ended.
+     */
+    private void runScript(RunMode mode, Runnable statements) {
+        this.mode = mode;
+        if(callStack != null) callStack.push("<script>", 0);
+        try {
+            statements.run();
+            // Callbacks may spawn tasks, and tasks may start operations whose callbacks still have to run
+            do {
+                if(eventLoop != null) eventLoop.run(this);
+                joinTasks(null);
+            } while(eventLoop != null && eventLoop.hasPending());
         } catch (RuntimeError error) {
-            ErrorReporter.getInstance().runTimeError(error);
+            // What the script printed before failing goes out ahead of the error
+            out.flush();
+            errorReporter.runTimeError(error);
+            // Nothing will await the tasks still running, and they must not outlive the script
+            joinTasks(error);
+            // Timers and operations still in flight belong to the failed script, and must not run in the next one
+            // this context runs, as in the REPL. They complete into the dropped loop, which nothing runs again.
+            synchronized (this) {
+                eventLoop = null;
+            }
+        } finally {
+            out.flush();
+            if(callStack != null) callStack.pop();
+            // Settle what is left of the current slice so the governor's totals are exact for this context
+            governor.record(pendingFuel, pendingMemory);
+            pendingFuel = 0;
+            pendingMemory = 0;
         }
     }
+
+    /**
+     * Waits for every task the script spawned, including tasks spawned while waiting, then reports the errors of
+     * those that failed without being awaited. Nothing else would ever report them. If the script failed, with the
+     * given error, each task is cancelled first, and a task that failed by passing that same error on isn't reported
+     * again.
+     */
+    private void joinTasks(RuntimeError failure) {
+        Map<OloxTask, RuntimeError> failed = new LinkedHashMap<>();
+        for(OloxTask task = tasks.poll(); task != null; task = tasks.poll()) {
+            if(failure != null) task.cancel();
+            RuntimeError error = task.join();
+            if(error != null && error != failure) failed.put(task, error);
+        }
+
+        // Every task has ended, so no await is still to come
+        failed.forEach((task, error) -> {
+            if(task.isAwaited()) return;
+            out.flush();
+            errorReporter.runTimeError(error);
+        });
+    }
 }
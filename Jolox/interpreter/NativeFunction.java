@@ -0,0 +1,30 @@
+package Jolox.interpreter;
+
+import java.util.List;
+
+public class NativeFunction implements OloxCallable {
+    public interface Body {
+        Object call(Interpreter interpreter, List<Object> arguments);
+    }
+
+    private final int arity;
+    private final Body body;
+
+    public NativeFunction(int arity, Body body) {
+        this.arity = arity;
+        this.body = body;
+    }
+
+    @Override
+    public int arity() {
+        return arity;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        return body.call(interpreter, arguments);
+    }
+
+    @Override
+    public String toString() { return "<native fn>"; }
+}
@@ -0,0 +1,61 @@
+package Jolox.interpreter;
+
+import Jolox.exceptions.RuntimeError;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded queue that tasks use to pass values to each other. Sending to a full channel or receiving from an
+ * empty one blocks the calling task until the other side catches up.
+ */
+public class OloxChannel {
+    // Blocking queues can't hold null, so nil travels through the channel as this marker
+    private static final Object NIL = new Object();
+
+    private final BlockingQueue<Object> queue;
+
+    private OloxChannel(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    static OloxChannel create(Object capacity) {
+        if(!(capacity instanceof Double size) || size < 1 || size != Math.floor(size)) {
+            throw new RuntimeError(null, "Channel capacity must be a positive whole number");
+        }
+
+        return new OloxChannel(size.intValue());
+    }
+
+    static OloxChannel of(Object channel) {
+        if(!(channel instanceof OloxChannel oloxChannel)) {
+            throw new RuntimeError(null, "Expected a channel");
+        }
+
+        return oloxChannel;
+    }
+
+    void send(Object value) {
+        try {
+            queue.put(value == null ? NIL : value);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeError(null, "Interrupted while sending on channel");
+        }
+    }
+
+    Object receive() {
+        try {
+            Object value = queue.take();
+            return value == NIL ? null : value;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeError(null, "Interrupted while receiving from channel");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<channel>";
+    }
+}
@@ -1,5 +1,8 @@
 package Jolox.interpreter;
 
+import Jolox.profiler.InstantiationCountEvent;
+import Jolox.profiler.Profiler;
+
 import java.util.List;
 import java.util.Map;
 
@@ -43,6 +46,8 @@ public class OloxClass extends OloxInstance implements OloxCallable {
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
         OloxInstance instance  = new OloxInstance(this);
+        interpreter.allocate(ResourceGovernor.INSTANCE_SIZE, null);
+        if(Profiler.recording()) InstantiationCountEvent.count(this, name);
         OloxFunction initializer = findMethod("init");
         if(initializer!= null) {
             initializer.bind(instance).call(interpreter, arguments);
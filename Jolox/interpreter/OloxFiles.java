@@ -0,0 +1,210 @@
+package Jolox.interpreter;
+
+import Jolox.exceptions.RuntimeError;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Natives that read and write whole files without blocking the script. Files are transferred through
+ * {@link AsynchronousFileChannel}s on a few I/O threads shared by the process, and the script's callback runs on its
+ * {@link EventLoop} with an error message, or nil, as its first argument. Relative paths are resolved against the
+ * script's directory, like imports.
+ * <pre>
+ * readFile(path, fun (error, text) { ... });
+ * writeFile(path, text, fun (error) { ... });
+ * </pre>
+ * At most {@link #MAX_OPEN} files are open at once and the rest wait their turn, so a script that starts reading a
+ * thousand files only holds the buffers of a few of them while it waits. The text of a file is charged to the
+ * script's memory budget before anything is allocated for it, and a file that would not fit fails instead.
+ */
+public class OloxFiles {
+    private static final int MAX_OPEN = 16;
+    // Largest transfer asked of a channel at once. The JDK copies heap buffers through a temporary direct buffer of
+    // the same size, so whole-file transfers would need as much native memory as the files themselves.
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final ExecutorService io = Executors.newFixedThreadPool(4, runnable -> {
+        Thread thread = new Thread(runnable, "olox-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Queue<Runnable> waiting = new ArrayDeque<>();
+    private static int open = 0;
+
+    private OloxFiles() {}
+
+    static void defineNatives(Interpreter interpreter) {
+        interpreter.globals.put("readFile", new NativeFunction(2, (caller, arguments) -> {
+            Path path = caller.resolvePath(path(arguments.get(0)));
+            OloxCallable callback = EventLoop.callback(arguments.get(1), 2);
+            ResourceGovernor governor = caller.getGovernor();
+            EventLoop loop = caller.getEventLoop();
+            loop.begin();
+            admit(() -> read(path, governor, loop, callback));
+            return null;
+        }));
+        interpreter.globals.put("writeFile", new NativeFunction(3, (caller, arguments) -> {
+            Path path = caller.resolvePath(path(arguments.get(0)));
+            if(!(arguments.get(1) instanceof String text)) {
+                throw new RuntimeError(null, "Can only write strings to a file");
+            }
+            OloxCallable callback = EventLoop.callback(arguments.get(2), 1);
+            EventLoop loop = caller.getEventLoop();
+            loop.begin();
+            admit(() -> write(path, text, loop, callback));
+            return null;
+        }));
+    }
+
+    private static String path(Object path) {
+        if(!(path instanceof String string)) throw new RuntimeError(null, "Expected a file path");
+        return string;
+    }
+
+    private static synchronized void admit(Runnable transfer) {
+        if(open < MAX_OPEN) {
+            open++;
+            io.execute(transfer);
+        } else {
+            waiting.add(transfer);
+        }
+    }
+
+    // Hands the finished transfer's place to the next one waiting
+    private static synchronized void release() {
+        Runnable next = waiting.poll();
+        if(next != null) {
+            io.execute(next);
+        } else {
+            open--;
+        }
+    }
+
+    /**
+     * Ends a transfer started through {@link #admit} and queues its callback. Every transfer ends here exactly once;
+     * an error thrown on an I/O thread instead would leave the script's event loop waiting forever.
+     */
+    private static void finish(AsynchronousFileChannel channel, EventLoop loop, OloxCallable callback,
+                               List<Object> arguments) {
+        if(channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Everything was transferred already
+            }
+        }
+        release();
+        loop.complete(callback, arguments);
+    }
+
+    private static AsynchronousFileChannel open(Path path, OpenOption... options) throws IOException {
+        return AsynchronousFileChannel.open(path, Set.of(options), io);
+    }
+
+    private static void read(Path path, ResourceGovernor governor, EventLoop loop, OloxCallable callback) {
+        AsynchronousFileChannel channel = null;
+        long reserved = 0;
+        ByteBuffer buffer;
+        try {
+            channel = open(path, READ);
+            long size = channel.size();
+            if(size > Integer.MAX_VALUE - 8) throw new IOException("too large to read into a string");
+            // The text takes at most two bytes a character, as it has no more characters than the file has bytes
+            long text = ResourceGovernor.STRING_HEADER_SIZE + 2 * size;
+            if(!governor.reserve(text)) throw new IOException("too large for the script's memory budget");
+            reserved = text;
+            buffer = ByteBuffer.allocate((int) size);
+        } catch (IOException | OutOfMemoryError e) {
+            governor.release(reserved);
+            finish(channel, loop, callback, Arrays.asList(message(path, e), null));
+            return;
+        }
+
+        AsynchronousFileChannel file = channel;
+        long charged = reserved;
+        // Reads until the buffer is full, as one read may return less than was asked for
+        buffer.limit(Math.min(buffer.capacity(), CHUNK_SIZE));
+        file.read(buffer, 0, null, new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(Integer read, Void attachment) {
+                if(read >= 0 && buffer.position() < buffer.capacity()) {
+                    buffer.limit(Math.min(buffer.capacity(), buffer.position() + CHUNK_SIZE));
+                    file.read(buffer, buffer.position(), null, this);
+                    return;
+                }
+
+                String text;
+                try {
+                    text = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+                } catch (OutOfMemoryError e) {
+                    failed(e, null);
+                    return;
+                }
+                finish(file, loop, callback, Arrays.asList(null, text));
+            }
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                governor.release(charged);
+                finish(file, loop, callback, Arrays.asList(message(path, e), null));
+            }
+        });
+    }
+
+    private static void write(Path path, String text, EventLoop loop, OloxCallable callback) {
+        AsynchronousFileChannel channel = null;
+        ByteBuffer buffer;
+        try {
+            channel = open(path, WRITE, CREATE, TRUNCATE_EXISTING);
+            buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | OutOfMemoryError e) {
+            finish(channel, loop, callback, Arrays.asList(message(path, e)));
+            return;
+        }
+
+        AsynchronousFileChannel file = channel;
+        int end = buffer.limit();
+        buffer.limit(Math.min(end, CHUNK_SIZE));
+        file.write(buffer, 0, null, new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(Integer written, Void attachment) {
+                if(buffer.position() < end) {
+                    buffer.limit(Math.min(end, buffer.position() + CHUNK_SIZE));
+                    file.write(buffer, buffer.position(), null, this);
+                    return;
+                }
+
+                finish(file, loop, callback, Arrays.asList((Object) null));
+            }
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                finish(file, loop, callback, Arrays.asList(message(path, e)));
+            }
+        });
+    }
+
+    private static String message(Path path, Throwable e) {
+        if(e instanceof NoSuchFileException) return "No such file: " + path;
+        if(e instanceof AccessDeniedException) return "Permission denied: " + path;
+        if(e instanceof OutOfMemoryError) return "Not enough memory to transfer " + path;
+        return "Could not access " + path + ": " + e.getMessage();
+    }
+}
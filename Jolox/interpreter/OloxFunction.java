@@ -2,19 +2,53 @@ package Jolox.interpreter;
 
 import Jolox.parser.Expr;
 import Jolox.exceptions.Return;
+import Jolox.profiler.CallStack;
+import Jolox.profiler.FunctionCallEvent;
+import Jolox.profiler.Profiler;
+import Jolox.resolver.Resolution;
 
 import java.util.List;
+import java.util.Map;
 
 public class OloxFunction implements OloxCallable {
     private final String name;
+    private final int line;
     private final Expr.Function declaration;
     private final Environment closure;
     private final boolean isInitializer;
-    OloxFunction(String name, Expr.Function declaration, Environment closure, boolean isInitializer) {
+    // Resolution data of the compilation unit the function was declared in, and globals of its module
+    private final Resolution resolution;
+    private final Map<String, Object> globals;
+    // Set instead of the declaration and resolution for a function stored in an arena
+    private final AstArena arena;
+    private final int node;
+    // Whether calling it returns an OloxGenerator instead of running the body. Worked out on the first call, since
+    // that means reading the whole body, which a precompiled script only decodes once the function runs.
+    private Boolean isGenerator;
+
+    OloxFunction(String name, int line, Expr.Function declaration, Environment closure, boolean isInitializer,
+                 Resolution resolution, Map<String, Object> globals) {
+        this(name, line, declaration, closure, isInitializer, resolution, globals, null, AstArena.NONE, null);
+    }
+
+    OloxFunction(String name, int line, AstArena arena, int node, Environment closure, boolean isInitializer,
+                 Map<String, Object> globals) {
+        this(name, line, null, closure, isInitializer, null, globals, arena, node, arena.d(node) != AstArena.NONE);
+    }
+
+    private OloxFunction(String name, int line, Expr.Function declaration, Environment closure, boolean isInitializer,
+                         Resolution resolution, Map<String, Object> globals, AstArena arena, int node,
+                         Boolean isGenerator) {
         this.name = name;
+        this.line = line;
         this.declaration = declaration;
         this.closure = closure;
         this.isInitializer = isInitializer;
+        this.resolution = resolution;
+        this.globals = globals;
+        this.arena = arena;
+        this.node = node;
+        this.isGenerator = isGenerator;
     }
 
     @Override
@@ -25,29 +59,80 @@ public class OloxFunction implements OloxCallable {
 
     @Override
     public int arity() {
+        if(arena != null) return Math.max(arena.b(node), 0);
         return declaration.parameters.size();
     }
 
     OloxFunction bind(OloxInstance instance) {
         Environment environment = new Environment(closure);
         environment.define(instance);
-        return new OloxFunction(name, declaration, environment, isInitializer);
+        return new OloxFunction(name, line, declaration, environment, isInitializer, resolution, globals, arena,
+                node, isGenerator);
     }
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
         Environment environment = new Environment(closure);
-        if(declaration.parameters != null) {
-            for (int i = 0; i < declaration.parameters.size(); i++) {
+        interpreter.allocate(ResourceGovernor.ENVIRONMENT_SIZE, null);
+        if(!isGetter()) {
+            for (int i = 0; i < arity(); i++) {
                 environment.define(arguments.get(i));
             }
         }
 
+        return run(interpreter, environment);
+    }
+
+    /**
+     * Calls a function of one parameter without building an argument list, for natives that call back into the
+     * script once per value.
+     */
+    Object call(Interpreter interpreter, Object argument) {
+        Environment environment = new Environment(closure);
+        interpreter.allocate(ResourceGovernor.ENVIRONMENT_SIZE, null);
+        environment.define(argument);
+        return run(interpreter, environment);
+    }
+
+    Object call(Interpreter interpreter, Object first, Object second) {
+        Environment environment = new Environment(closure);
+        interpreter.allocate(ResourceGovernor.ENVIRONMENT_SIZE, null);
+        environment.define(first);
+        environment.define(second);
+        return run(interpreter, environment);
+    }
+
+    private Object run(Interpreter interpreter, Environment environment) {
+        if(isGenerator == null) isGenerator = !resolution.getSuspensions(declaration).isEmpty();
+        if(isGenerator) {
+            if(arena != null) {
+                OloxGenerator.Code code = (OloxGenerator.Code) arena.constant(arena.d(node));
+                return new OloxGenerator(code.function(), code.resolution(), environment, globals);
+            }
+            return new OloxGenerator(declaration, resolution, environment, globals);
+        }
+
+        CallStack callStack = Profiler.ENABLED ? interpreter.getCallStack() : null;
+        if(callStack != null) callStack.push(name == null ? "<fn>" : name, line);
+        FunctionCallEvent event = Profiler.recording() ? new FunctionCallEvent() : null;
+        if(event != null) event.begin();
         try {
-            interpreter.executeBlock(declaration.body, environment);
+            if(arena != null) {
+                interpreter.getArenaInterpreter().executeBody(arena, arena.a(node), environment, globals);
+            } else {
+                interpreter.executeBlock(declaration.body, environment, resolution, globals);
+            }
         } catch (Return returnValue) {
             if(isInitializer) return closure.getAt(0, closure.getSize() - 1);
             return returnValue.getValue();
+        } finally {
+            if(callStack != null) callStack.pop();
+            if(event != null) event.end();
+            if(event != null && event.shouldCommit()) {
+                event.function = name == null ? "<fn>" : name;
+                event.line = line;
+                event.commit();
+            }
         }
 
         if(isInitializer) {
@@ -58,6 +143,7 @@ public class OloxFunction implements OloxCallable {
     }
 
     public boolean isGetter() {
+        if(arena != null) return arena.b(node) == AstArena.NONE;
         return declaration.parameters == null;
     }
 }
@@ -0,0 +1,192 @@
+package Jolox.interpreter;
+
+import Jolox.exceptions.BreakException;
+import Jolox.exceptions.Return;
+import Jolox.exceptions.RuntimeError;
+import Jolox.parser.Expr;
+import Jolox.resolver.Resolution;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What calling a generator function, one with a yield statement in its body, returns instead of running the body.
+ * Each call to next runs the body on the caller's context up to its next yield. Where the body stopped is kept as a
+ * stack of frames, one for each block and loop around the yield, so a waiting generator holds no thread and its
+ * memory doesn't grow with the number of values it produces. Statements with no yield inside them run through the
+ * interpreter as usual; only the statements the resolution lists as suspensions are stepped through here.
+ * <p>
+ * A return statement, or an error, ends the generator. The value of a return is dropped.
+ */
+public class OloxGenerator implements OloxIterator {
+    // The tree form of a generator function kept in an arena, which doesn't lower generator bodies
+    record Code(Expr.Function function, Resolution resolution) {}
+
+    private final Resolution resolution;
+    private final Set<Stmt> suspensions;
+    private final Map<String, Object> globals;
+    private final Deque<Frame> frames = new ArrayDeque<>();
+    private Object value;
+    // Whether the body has yielded a value that next hasn't returned yet
+    private boolean ready;
+    private boolean running;
+
+    OloxGenerator(Expr.Function function, Resolution resolution, Environment environment,
+                  Map<String, Object> globals) {
+        this.resolution = resolution;
+        this.suspensions = resolution.getSuspensions(function);
+        this.globals = globals;
+        frames.push(new BlockFrame(function.body, environment));
+    }
+
+    @Override
+    public Object next(Interpreter interpreter) {
+        advance(interpreter);
+        if(!ready) throw new RuntimeError(null, "Generator has no more values");
+
+        ready = false;
+        Object next = value;
+        value = null;
+        return next;
+    }
+
+    @Override
+    public boolean done(Interpreter interpreter) {
+        advance(interpreter);
+        return !ready;
+    }
+
+    /**
+     * Runs the body until it yields or ends, unless a value is already waiting.
+     */
+    private void advance(Interpreter interpreter) {
+        if(ready || frames.isEmpty()) return;
+        if(running) throw new RuntimeError(null, "Generator is already running");
+
+        Environment previousEnvironment = interpreter.environment;
+        Resolution previousResolution = interpreter.resolution;
+        Map<String, Object> previousGlobals = interpreter.globals;
+        running = true;
+        try {
+            interpreter.resolution = resolution;
+            interpreter.globals = globals;
+            while(!ready && !frames.isEmpty()) {
+                try {
+                    frames.peek().step(interpreter);
+                } catch (BreakException e) {
+                    // Thrown by a statement run whole; it ends the innermost loop, which is suspended here
+                    while(!frames.isEmpty() && !(frames.pop() instanceof LoopFrame)) {
+
+                    }
+                }
+            }
+        } catch (Return returnValue) {
+            frames.clear();
+        } catch (RuntimeException e) {
+            frames.clear();
+            throw e;
+        } finally {
+            interpreter.environment = previousEnvironment;
+            interpreter.resolution = previousResolution;
+            interpreter.globals = previousGlobals;
+            running = false;
+        }
+    }
+
+    /**
+     * Starts a statement of the body in the given environment. Whatever has no yield in it runs to completion.
+     */
+    private void enter(Stmt stmt, Environment environment, Interpreter interpreter) {
+        interpreter.environment = environment;
+        if(!suspensions.contains(stmt)) {
+            interpreter.execute(stmt);
+        } else if(stmt instanceof Stmt.Yield yield) {
+            value = yield.value == null ? null : interpreter.evaluate(yield.value);
+            ready = true;
+        } else if(stmt instanceof Stmt.Block block) {
+            if(!resolution.isScopeless(block)) {
+                interpreter.allocate(ResourceGovernor.ENVIRONMENT_SIZE, null);
+                environment = new Environment(environment);
+            }
+            frames.push(new BlockFrame(block.statements, environment));
+        } else if(stmt instanceof Stmt.If branch) {
+            if(Interpreter.isTrue(interpreter.evaluate(branch.condition))) {
+                enter(branch.thenBranch, environment, interpreter);
+            } else if(branch.elseBranch != null) {
+                enter(branch.elseBranch, environment, interpreter);
+            }
+        } else if(stmt instanceof Stmt.While loop) {
+            frames.push(new LoopFrame(loop.condition, null, loop.body, environment));
+        } else if(stmt instanceof Stmt.CountedLoop loop) {
+            frames.push(new LoopFrame(loop.condition, loop.increment, loop.body, environment));
+        }
+    }
+
+    private abstract static class Frame {
+        final Environment environment;
+
+        Frame(Environment environment) {
+            this.environment = environment;
+        }
+
+        abstract void step(Interpreter interpreter);
+    }
+
+    private class BlockFrame extends Frame {
+        private final List<Stmt> statements;
+        private int next = 0;
+
+        BlockFrame(List<Stmt> statements, Environment environment) {
+            super(environment);
+            this.statements = statements;
+        }
+
+        @Override
+        void step(Interpreter interpreter) {
+            if(next == statements.size()) {
+                frames.pop();
+            } else {
+                enter(statements.get(next++), environment, interpreter);
+            }
+        }
+    }
+
+    // A while loop, or a counted loop with its increment
+    private class LoopFrame extends Frame {
+        private final Expr condition;
+        private final Expr increment;
+        private final Stmt body;
+        private boolean started = false;
+
+        LoopFrame(Expr condition, Expr increment, Stmt body, Environment environment) {
+            super(environment);
+            this.condition = condition;
+            this.increment = increment;
+            this.body = body;
+        }
+
+        @Override
+        void step(Interpreter interpreter) {
+            interpreter.environment = environment;
+            if(started) {
+                interpreter.checkpoint(null);
+                if(increment != null) interpreter.evaluate(increment);
+            }
+            started = true;
+
+            if(Interpreter.isTrue(interpreter.evaluate(condition))) {
+                enter(body, environment, interpreter);
+            } else {
+                frames.pop();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<generator>";
+    }
+}
@@ -2,6 +2,7 @@ package Jolox.interpreter;
 
 import Jolox.exceptions.RuntimeError;
 import Jolox.lexical_scanner.Token;
+import Jolox.lexical_scanner.TokenType;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -20,17 +21,24 @@ public class OloxInstance {
     }
 
     Object get(Token name) {
-        if(fields.containsKey(name.getLexeme())) {
-            return fields.get(name.getLexeme());
+        return get(name.getLexeme(), name.getLine());
+    }
+
+    Object get(String name, int line) {
+        if(fields.containsKey(name)) {
+            return fields.get(name);
         }
 
-        OloxFunction method = klass.findMethod(name.getLexeme());
+        OloxFunction method = klass.findMethod(name);
         if(method != null) return method.bind(this);
 
-        throw new RuntimeError(name, "Undefined property " + name.getLexeme());
+        throw new RuntimeError(new Token(TokenType.IDENTIFIER, name, null, line), "Undefined property " + name);
     }
 
-    void set(Token name, Object value) {
-        fields.put(name.getLexeme(), value);
+    /**
+     * Returns whether the field is new, as far as can be told without a second lookup.
+     */
+    boolean set(String name, Object value) {
+        return fields.put(name, value) == null;
     }
 }
@@ -0,0 +1,30 @@
+package Jolox.interpreter;
+
+import Jolox.exceptions.RuntimeError;
+
+/**
+ * A source of values that scripts step through with the next and done natives, such as a generator or a file
+ * reader. Values are produced one at a time, as they are asked for.
+ */
+public interface OloxIterator {
+    /**
+     * Returns the next value, raising a runtime error if there are none left.
+     */
+    Object next(Interpreter interpreter);
+
+    boolean done(Interpreter interpreter);
+
+    static void defineNatives(Interpreter interpreter) {
+        interpreter.globals.put("next", new NativeFunction(1,
+                (caller, arguments) -> of(arguments.get(0)).next(caller)));
+        interpreter.globals.put("done", new NativeFunction(1,
+                (caller, arguments) -> of(arguments.get(0)).done(caller)));
+    }
+
+    static OloxIterator of(Object iterator) {
+        if(!(iterator instanceof OloxIterator oloxIterator)) {
+            throw new RuntimeError(null, "Expected a generator or a reader");
+        }
+        return oloxIterator;
+    }
+}
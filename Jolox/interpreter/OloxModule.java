@@ -0,0 +1,41 @@
+package Jolox.interpreter;
+
+import Jolox.exceptions.RuntimeError;
+import Jolox.lexical_scanner.Token;
+import Jolox.lexical_scanner.TokenType;
+
+import java.util.Map;
+
+/**
+ * The namespace an import statement binds: a live view of the globals of the imported module.
+ */
+public class OloxModule extends OloxInstance {
+    private final String name;
+    private final Map<String, Object> globals;
+
+    OloxModule(String name, Map<String, Object> globals) {
+        super(null);
+        this.name = name;
+        this.globals = globals;
+    }
+
+    @Override
+    Object get(String name, int line) {
+        if(globals.containsKey(name)) {
+            return globals.get(name);
+        }
+
+        throw new RuntimeError(new Token(TokenType.IDENTIFIER, name, null, line),
+                "Module " + this.name + " has no member " + name);
+    }
+
+    @Override
+    boolean set(String name, Object value) {
+        return globals.put(name, value) == null;
+    }
+
+    @Override
+    public String toString() {
+        return "<module " + name + ">";
+    }
+}
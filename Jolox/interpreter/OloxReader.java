@@ -0,0 +1,183 @@
+package Jolox.interpreter;
+
+import Jolox.exceptions.RuntimeError;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Steps through a file a line or a fixed-size record at a time, straight out of a memory mapping. Nothing is read
+ * ahead or decoded until next asks for it, and then only the bytes of that one value are copied into a string, so
+ * memory stays bounded by the longest line however large the file is. The file is mapped in windows of
+ * {@link #WINDOW_SIZE} bytes, so files larger than a single mapping can hold are read too.
+ * <pre>
+ * var log = lines("access.log");
+ * while(!done(log)) print next(log);
+ * </pre>
+ * Lines are decoded as UTF-8, without their line terminator. Records are decoded as ISO-8859-1, one character per
+ * byte, so binary data comes through unchanged; the last record is shorter if the file size is not a multiple of the
+ * record size.
+ */
+public class OloxReader implements OloxIterator {
+    private static final long WINDOW_SIZE = 256L * 1024 * 1024;
+    private static final long NEWLINES = 0x0a0a0a0a0a0a0a0aL;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long size;
+    // Bytes per record, or 0 when reading lines
+    private final int recordSize;
+    private MappedByteBuffer window;
+    private long windowStart = 0;
+    // Position in the file of the next value
+    private long position = 0;
+    // Holds the bytes of one value on their way into a string, grown to the longest value read
+    private byte[] scratch = new byte[256];
+
+    private OloxReader(Path path, int recordSize) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.recordSize = recordSize;
+        map(0);
+        if(size == 0) close();
+    }
+
+    static void defineNatives(Interpreter interpreter) {
+        interpreter.globals.put("lines", new NativeFunction(1,
+                (caller, arguments) -> open(caller, arguments.get(0), 0)));
+        interpreter.globals.put("records", new NativeFunction(2, (caller, arguments) -> {
+            if(!(arguments.get(1) instanceof Double size) || size < 1 || size != Math.floor(size)
+                    || size > Integer.MAX_VALUE) {
+                throw new RuntimeError(null, "Record size must be a positive whole number");
+            }
+            return open(caller, arguments.get(0), size.intValue());
+        }));
+    }
+
+    private static OloxReader open(Interpreter interpreter, Object path, int recordSize) {
+        if(!(path instanceof String string)) throw new RuntimeError(null, "Expected a file path");
+
+        Path file = interpreter.resolvePath(string);
+        try {
+            return new OloxReader(file, recordSize);
+        } catch (NoSuchFileException e) {
+            throw new RuntimeError(null, "No such file: " + file);
+        } catch (AccessDeniedException e) {
+            throw new RuntimeError(null, "Permission denied: " + file);
+        } catch (IOException e) {
+            throw new RuntimeError(null, "Could not open " + file + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean done(Interpreter interpreter) {
+        return position >= size;
+    }
+
+    @Override
+    public Object next(Interpreter interpreter) {
+        if(position >= size) throw new RuntimeError(null, "Reader is at the end of " + path.getFileName());
+
+        String value = recordSize > 0 ? nextRecord() : nextLine();
+        interpreter.allocate(ResourceGovernor.STRING_HEADER_SIZE + 2 * value.length(), null);
+        if(position >= size) close();
+        return value;
+    }
+
+    private String nextRecord() {
+        int length = (int) Math.min(recordSize, size - position);
+        String record = decode(length, StandardCharsets.ISO_8859_1);
+        position += length;
+        return record;
+    }
+
+    private String nextLine() {
+        int length = 0;
+        boolean terminated = false;
+        for(;;) {
+            long end = Math.min(size, windowStart + window.capacity());
+            int start = (int) (position - windowStart);
+            int i = start + length;
+            int limit = (int) (end - windowStart);
+            i = indexOfNewline(i, limit);
+            length = i - start;
+
+            if(i < limit) {
+                terminated = true;
+                break;
+            }
+            if(end == size) break;
+            if(length >= WINDOW_SIZE) throw new RuntimeError(null, "Line is longer than " + WINDOW_SIZE + " bytes");
+            // The line runs past this window, so map the next one from where the line starts
+            map(position);
+        }
+
+        int content = length;
+        if(content > 0 && window.get((int) (position - windowStart) + content - 1) == '\r') content--;
+        String line = decode(content, StandardCharsets.UTF_8);
+        position += terminated ? length + 1 : length;
+        return line;
+    }
+
+    /**
+     * Finds the first newline in the window between the two indexes, or returns the limit. Eight bytes are tested at a
+     * time: XOR with a word of newlines turns the newline bytes to zero, and the usual subtract-and-mask finds the
+     * lowest zero byte.
+     */
+    private int indexOfNewline(int from, int limit) {
+        int i = from;
+        for(; i + Long.BYTES <= limit; i += Long.BYTES) {
+            long word = window.getLong(i) ^ NEWLINES;
+            long zeros = (word - 0x0101010101010101L) & ~word & 0x8080808080808080L;
+            if(zeros != 0) return i + (Long.numberOfTrailingZeros(zeros) >>> 3);
+        }
+        while(i < limit && window.get(i) != '\n') i++;
+        return i;
+    }
+
+    /**
+     * Decodes the given number of bytes from the current position, mapping a window that holds them all if needed.
+     */
+    private String decode(int length, Charset charset) {
+        if(position + length > windowStart + window.capacity()) map(position);
+
+        if(scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+        window.get((int) (position - windowStart), scratch, 0, length);
+        return new String(scratch, 0, length, charset);
+    }
+
+    private void map(long start) {
+        try {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start));
+            // Lowest address in the lowest byte, so the first newline in a word is its lowest zero byte
+            window.order(ByteOrder.LITTLE_ENDIAN);
+            windowStart = start;
+        } catch (IOException e) {
+            close();
+            throw new RuntimeError(null, "Could not read " + path + ": " + e.getMessage());
+        }
+    }
+
+    // The mapping stays valid after the channel is closed, and is released once the reader is unreachable
+    private void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<reader " + path.getFileName() + ">";
+    }
+}
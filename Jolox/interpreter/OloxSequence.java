@@ -0,0 +1,208 @@
+package Jolox.interpreter;
+
+import Jolox.exceptions.RuntimeError;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * A lazy pipeline over a generator, a reader, another sequence or a count. map, filter and take only describe a
+ * stage, returning a new sequence that shares its source; nothing runs until values are pulled out, by reduce or by
+ * next and done. Then every value goes through all the stages in one pass before the next is read from the source,
+ * so no stage builds a collection and a pipeline over any number of values needs memory for one of them at a time.
+ * <pre>
+ * var squares = map(sequence(1000000), fun (n) { return n * n; });
+ * print reduce(take(filter(squares, fun (n) { return n > 50; }), 10), fun (sum, n) { return sum + n; }, 0);
+ * </pre>
+ * The functions are called through {@link OloxFunction}'s fixed-arity fast path, without the argument list a call
+ * expression builds. A take stage stops reading the source as soon as its last value has passed, so pipelines over
+ * endless generators end. A sequence over a count can be run any number of times, but generators and readers are read
+ * as they are consumed, so a sequence over one of them can be run once, like the generator or reader itself.
+ */
+public class OloxSequence implements OloxIterator {
+    private enum Kind { MAP, FILTER, TAKE }
+
+    private record Stage(Kind kind, OloxCallable function, int count) {}
+
+    private final OloxIterator source;
+    private final Stage[] stages;
+    // Where next and done are in the sequence, created the first time either is called
+    private Cursor cursor;
+
+    private OloxSequence(OloxIterator source, Stage[] stages) {
+        this.source = source;
+        this.stages = stages;
+    }
+
+    static void defineNatives(Interpreter interpreter) {
+        interpreter.globals.put("sequence", new NativeFunction(1,
+                (caller, arguments) -> new OloxSequence(source(arguments.get(0)), new Stage[0])));
+        interpreter.globals.put("map", new NativeFunction(2, (caller, arguments) ->
+                of(arguments.get(0)).then(new Stage(Kind.MAP, function(arguments.get(1), 1), 0))));
+        interpreter.globals.put("filter", new NativeFunction(2, (caller, arguments) ->
+                of(arguments.get(0)).then(new Stage(Kind.FILTER, function(arguments.get(1), 1), 0))));
+        interpreter.globals.put("take", new NativeFunction(2, (caller, arguments) ->
+                of(arguments.get(0)).then(new Stage(Kind.TAKE, null, count(arguments.get(1))))));
+        interpreter.globals.put("reduce", new NativeFunction(3, (caller, arguments) ->
+                of(arguments.get(0)).reduce(caller, function(arguments.get(1), 2), arguments.get(2))));
+    }
+
+    /**
+     * Accepts a generator, reader or sequence to read values from, or a count n for the numbers 0 to n - 1.
+     */
+    private static OloxIterator source(Object source) {
+        if(source instanceof OloxIterator iterator) return iterator;
+        if(source instanceof Double) return new Count(count(source));
+        throw new RuntimeError(null, "Can only make a sequence of a generator, a reader or a count");
+    }
+
+    /**
+     * map, filter and take also take generators and readers, which they treat as a sequence over them.
+     */
+    private static OloxSequence of(Object sequence) {
+        if(sequence instanceof OloxSequence oloxSequence) return oloxSequence;
+        if(sequence instanceof OloxIterator iterator) return new OloxSequence(iterator, new Stage[0]);
+        throw new RuntimeError(null, "Expected a sequence");
+    }
+
+    private static OloxCallable function(Object function, int arity) {
+        if(!(function instanceof OloxCallable callable) || callable.arity() != arity) {
+            throw new RuntimeError(null, "Expected a function taking " + arity
+                    + (arity == 1 ? " argument" : " arguments"));
+        }
+        return callable;
+    }
+
+    private static int count(Object count) {
+        if(!(count instanceof Double number) || number < 0 || number != Math.floor(number)
+                || number > Integer.MAX_VALUE) {
+            throw new RuntimeError(null, "Count must be a non-negative whole number");
+        }
+        return number.intValue();
+    }
+
+    private OloxSequence then(Stage stage) {
+        Stage[] next = Arrays.copyOf(stages, stages.length + 1);
+        next[stages.length] = stage;
+        return new OloxSequence(source, next);
+    }
+
+    private Object reduce(Interpreter interpreter, OloxCallable function, Object initial) {
+        Object accumulator = initial;
+        Cursor values = new Cursor();
+        while(values.advance(interpreter)) {
+            accumulator = call(interpreter, function, accumulator, values.value);
+        }
+        return accumulator;
+    }
+
+    @Override
+    public Object next(Interpreter interpreter) {
+        if(!done(interpreter)) return cursor.take();
+        throw new RuntimeError(null, "Sequence has no more values");
+    }
+
+    @Override
+    public boolean done(Interpreter interpreter) {
+        if(cursor == null) cursor = new Cursor();
+        return !cursor.ready && !cursor.advance(interpreter);
+    }
+
+    private static Object call(Interpreter interpreter, OloxCallable function, Object argument) {
+        interpreter.checkpoint(null);
+        if(function instanceof OloxFunction oloxFunction) return oloxFunction.call(interpreter, argument);
+        return function.call(interpreter, Collections.singletonList(argument));
+    }
+
+    private static Object call(Interpreter interpreter, OloxCallable function, Object first, Object second) {
+        interpreter.checkpoint(null);
+        if(function instanceof OloxFunction oloxFunction) return oloxFunction.call(interpreter, first, second);
+        return function.call(interpreter, Arrays.asList(first, second));
+    }
+
+    /**
+     * One run through the pipeline. Holds what is left of each take stage, and its own count if the source is one,
+     * so the sequence itself stays unchanged.
+     */
+    private class Cursor {
+        // Counts start again from 0 on every run; generators and readers carry on from where they are
+        private final OloxIterator input = source instanceof Count count ? new Count(count.count) : source;
+        private final int[] remaining = new int[stages.length];
+        private boolean exhausted = false;
+        private boolean ready = false;
+        private Object value;
+
+        Cursor() {
+            for(int i = 0; i < stages.length; i++) {
+                remaining[i] = stages[i].count();
+                if(stages[i].kind() == Kind.TAKE && remaining[i] == 0) exhausted = true;
+            }
+        }
+
+        /**
+         * Reads from the source until a value makes it through every stage, and holds on to it.
+         */
+        boolean advance(Interpreter interpreter) {
+            values:
+            while(!exhausted && !input.done(interpreter)) {
+                Object current = input.next(interpreter);
+                for(int i = 0; i < stages.length; i++) {
+                    Stage stage = stages[i];
+                    switch(stage.kind()) {
+                        case MAP -> current = call(interpreter, stage.function(), current);
+                        case FILTER -> {
+                            if(!Interpreter.isTrue(call(interpreter, stage.function(), current))) continue values;
+                        }
+                        case TAKE -> {
+                            // Every later value would have to pass here too, so the last one allowed ends the run
+                            if(--remaining[i] == 0) exhausted = true;
+                        }
+                    }
+                }
+
+                value = current;
+                ready = true;
+                return true;
+            }
+
+            value = null;
+            ready = false;
+            return false;
+        }
+
+        Object take() {
+            ready = false;
+            Object next = value;
+            value = null;
+            return next;
+        }
+    }
+
+    /**
+     * The numbers from 0 up to a count, as a source.
+     */
+    private static class Count implements OloxIterator {
+        private final int count;
+        private int next = 0;
+
+        Count(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public Object next(Interpreter interpreter) {
+            if(next == count) throw new RuntimeError(null, "Sequence has no more values");
+            return (double) next++;
+        }
+
+        @Override
+        public boolean done(Interpreter interpreter) {
+            return next == count;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<sequence>";
+    }
+}
@@ -0,0 +1,141 @@
+package Jolox.interpreter;
+
+import Jolox.exceptions.RuntimeError;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A function running concurrently with the script that spawned it. Tasks run on virtual threads when the JVM
+ * provides them, and on a pool of daemon platform threads otherwise. A script is not finished until every task it
+ * spawned is; the error of a task that fails without being awaited is reported once all of them have ended. When the
+ * script itself fails, nothing would wait for its tasks any more, so those still running are cancelled: each is
+ * interrupted, stops at its next call or loop iteration, or as soon as it blocks, and is waited for before the script
+ * ends.
+ */
+public class OloxTask {
+    private static final ExecutorService executor = createExecutor();
+
+    private final Future<Object> result;
+    private volatile boolean awaited = false;
+    // Guarded by this, so a thread is never interrupted after the task has stopped running on it
+    private boolean cancelled = false;
+    private Thread runner;
+
+    private OloxTask(OloxCallable function, Interpreter context) {
+        this.result = executor.submit(() -> run(function, context));
+    }
+
+    static OloxTask spawn(Interpreter interpreter, Object callee) {
+        if(!(callee instanceof OloxCallable function) || function.arity() != 0) {
+            throw new RuntimeError(null, "Can only spawn functions that take no arguments");
+        }
+
+        OloxTask spawned = new OloxTask(function, interpreter.fork());
+        interpreter.track(spawned);
+        return spawned;
+    }
+
+    static Object await(Object task) {
+        if(!(task instanceof OloxTask oloxTask)) {
+            throw new RuntimeError(null, "Can only await tasks");
+        }
+
+        oloxTask.awaited = true;
+        return oloxTask.result();
+    }
+
+    private Object run(OloxCallable function, Interpreter context) {
+        synchronized (this) {
+            if(cancelled) return null;
+            runner = Thread.currentThread();
+        }
+        try {
+            return function.call(context, Collections.emptyList());
+        } finally {
+            synchronized (this) {
+                runner = null;
+                // An interrupt meant for this task must not reach whatever runs on the thread next
+                Thread.interrupted();
+            }
+        }
+    }
+
+    /**
+     * Interrupts the task unless it has already ended. Interpreter contexts stop at their next checkpoint once their
+     * thread is interrupted, and blocking natives stop waiting.
+     */
+    synchronized void cancel() {
+        if(result.isDone()) return;
+
+        cancelled = true;
+        if(runner != null) runner.interrupt();
+    }
+
+    /**
+     * Waits for the task to finish and returns the error it failed with, or null if it succeeded or was cancelled.
+     */
+    RuntimeError join() {
+        try {
+            result();
+            return null;
+        } catch (RuntimeError error) {
+            synchronized (this) {
+                return cancelled ? null : error;
+            }
+        }
+    }
+
+    /**
+     * Whether the script has awaited the task, and so has seen its error if it failed.
+     */
+    boolean isAwaited() {
+        return awaited;
+    }
+
+    private Object result() {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeError error) throw error;
+            throw new RuntimeError(null, "Task failed: " + e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeError(null, "Interrupted while awaiting task");
+        }
+    }
+
+    static void defineNatives(Interpreter interpreter) {
+        interpreter.globals.put("spawn", new NativeFunction(1,
+                (caller, arguments) -> spawn(caller, arguments.get(0))));
+        interpreter.globals.put("await", new NativeFunction(1, (caller, arguments) -> await(arguments.get(0))));
+        interpreter.globals.put("channel", new NativeFunction(1,
+                (caller, arguments) -> OloxChannel.create(arguments.get(0))));
+        interpreter.globals.put("send", new NativeFunction(2, (caller, arguments) -> {
+            OloxChannel.of(arguments.get(0)).send(arguments.get(1));
+            return null;
+        }));
+        interpreter.globals.put("receive", new NativeFunction(1,
+                (caller, arguments) -> OloxChannel.of(arguments.get(0)).receive()));
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "olox-task");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<task>";
+    }
+}
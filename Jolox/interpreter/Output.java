@@ -0,0 +1,119 @@
+package Jolox.interpreter;
+
+import Jolox.utils.FlushPolicy;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Where print statements and REPL echoes go. Lines are collected in a buffer and handed to the sink according to the
+ * {@link FlushPolicy}, so a print-heavy script makes one write per buffer instead of one per line. Contexts forked for
+ * tasks share their parent's output, so lines from different threads never interleave mid-line.
+ */
+public class Output {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final Writer sink;
+    private final FlushPolicy policy;
+    private final int bufferSize;
+    private final StringBuilder buffer;
+
+    public Output(Writer sink, FlushPolicy policy, int bufferSize) {
+        this.sink = sink;
+        this.policy = policy;
+        this.bufferSize = bufferSize;
+        this.buffer = new StringBuilder(bufferSize);
+    }
+
+    public Output(Writer sink, FlushPolicy policy) {
+        this(sink, policy, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Writes straight to the standard output file descriptor, bypassing the locking and autoflush of System.out.
+     */
+    public static Output stdout(FlushPolicy policy) {
+        return new Output(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), Charset.defaultCharset()),
+                policy);
+    }
+
+    /**
+     * Writes the value the way Olox prints it, followed by a newline.
+     */
+    public synchronized void println(Object value) {
+        append(buffer, value);
+        endLine();
+    }
+
+    /**
+     * Writes a REPL echo of a variable definition.
+     */
+    public synchronized void println(String name, Object value) {
+        buffer.append(name).append(" = ");
+        append(buffer, value);
+        endLine();
+    }
+
+    public synchronized void flush() {
+        if(buffer.length() == 0) return;
+
+        try {
+            sink.append(buffer);
+            sink.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.setLength(0);
+        }
+    }
+
+    private void endLine() {
+        buffer.append('\n');
+        if(policy == FlushPolicy.ON_NEWLINE || (policy == FlushPolicy.ON_SIZE && buffer.length() >= bufferSize)) {
+            flush();
+        }
+    }
+
+    static String stringify(Object value) {
+        if(value instanceof String string) return string;
+
+        StringBuilder text = new StringBuilder();
+        append(text, value);
+        return text.toString();
+    }
+
+    static void append(StringBuilder text, Object value) {
+        if(value == null) {
+            text.append("nil");
+        } else if(value instanceof Double number) {
+            appendNumber(text, number);
+        } else {
+            text.append(value);
+        }
+    }
+
+    /**
+     * Appends a number as Double.toString would print it, minus a trailing ".0". Whole numbers below 10^7, which
+     * Double.toString writes without an exponent, are appended as longs so no intermediate string is built.
+     */
+    static void appendNumber(StringBuilder text, double number) {
+        long whole = (long) number;
+        if(whole == number && whole > -10_000_000 && whole < 10_000_000) {
+            if(whole == 0 && Double.doubleToRawLongBits(number) != 0) text.append('-');
+            text.append(whole);
+            return;
+        }
+
+        int start = text.length();
+        text.append(number);
+        int length = text.length();
+        if(length - start > 2 && text.charAt(length - 2) == '.' && text.charAt(length - 1) == '0') {
+            text.setLength(length - 2);
+        }
+    }
+}
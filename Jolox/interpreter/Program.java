@@ -0,0 +1,28 @@
+package Jolox.interpreter;
+
+import Jolox.resolver.Resolution;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The output of the front end: parsed statements together with their resolution data.
+ * A program is never modified by the interpreter, so one instance can be run by many interpreters at once.
+ */
+public class Program {
+    private final List<Stmt> statements;
+    private final Resolution resolution;
+
+    public Program(List<Stmt> statements, Resolution resolution) {
+        this.statements = Collections.unmodifiableList(statements);
+        this.resolution = resolution;
+    }
+
+    public List<Stmt> getStatements() {
+        return statements;
+    }
+
+    public Resolution getResolution() {
+        return resolution;
+    }
+}
@@ -0,0 +1,105 @@
+package Jolox.interpreter;
+
+import Jolox.exceptions.RuntimeError;
+import Jolox.lexical_scanner.Token;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the work a script may do. Fuel is spent one unit per loop iteration and per call, and the memory budget is
+ * spent on an approximate byte count for every environment, instance, field and string the script creates. Both are
+ * totals for the whole run, shared by the tasks the script spawns. Another thread may {@link #cancel} the run at any
+ * time. A script that runs out of either, or is cancelled, stops with a runtime error.
+ * <p>
+ * Interpreter contexts count their work locally and only charge it here once per {@link #FUEL_SLICE} steps or
+ * {@link #MEMORY_SLICE} bytes, so limits are enforced within one slice and a generous governor costs next to nothing.
+ */
+public class ResourceGovernor {
+    static final int FUEL_SLICE = 1024;
+    static final int MEMORY_SLICE = 64 * 1024;
+
+    // Rough sizes, in bytes, of what the interpreter allocates on behalf of a script
+    static final int ENVIRONMENT_SIZE = 64;
+    static final int INSTANCE_SIZE = 80;
+    static final int FIELD_SIZE = 48;
+    static final int STRING_HEADER_SIZE = 40;
+
+    private final long maxFuel;
+    private final long maxMemory;
+    private final AtomicLong fuel = new AtomicLong();
+    private final AtomicLong memory = new AtomicLong();
+    private volatile boolean cancelled = false;
+
+    /**
+     * Creates a governor allowing the given number of steps and bytes. Pass {@link Long#MAX_VALUE} for no limit.
+     */
+    public ResourceGovernor(long maxFuel, long maxMemory) {
+        this.maxFuel = maxFuel;
+        this.maxMemory = maxMemory;
+    }
+
+    public static ResourceGovernor unlimited() {
+        return new ResourceGovernor(Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads the limits from -Djolox.maxFuel and -Djolox.maxMemory, either of which may be left unset.
+     */
+    public static ResourceGovernor fromSystemProperties() {
+        return new ResourceGovernor(Long.getLong("jolox.maxFuel", Long.MAX_VALUE),
+                Long.getLong("jolox.maxMemory", Long.MAX_VALUE));
+    }
+
+    /**
+     * Asks the script to stop. It does so at its next checkpoint, raising a runtime error.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public long getFuelUsed() {
+        return fuel.get();
+    }
+
+    public long getMemoryUsed() {
+        return memory.get();
+    }
+
+    void record(long steps, long bytes) {
+        fuel.addAndGet(steps);
+        memory.addAndGet(bytes);
+    }
+
+    /**
+     * Charges memory about to be allocated off the script's thread, where a runtime error could not stop the script,
+     * unless it would exceed the budget. Returns whether it was charged.
+     */
+    boolean reserve(long bytes) {
+        if(memory.addAndGet(bytes) <= maxMemory) return true;
+        memory.addAndGet(-bytes);
+        return false;
+    }
+
+    /**
+     * Gives back memory charged through {@link #reserve} that was never allocated after all.
+     */
+    void release(long bytes) {
+        memory.addAndGet(-bytes);
+    }
+
+    void charge(long steps, long bytes, Token where) {
+        long fuelUsed = fuel.addAndGet(steps);
+        long memoryUsed = memory.addAndGet(bytes);
+        if(cancelled) throw new RuntimeError(where, "Script was cancelled");
+        if(fuelUsed > maxFuel) {
+            throw new RuntimeError(where, "Script ran out of fuel after " + maxFuel + " steps");
+        }
+        if(memoryUsed > maxMemory) {
+            throw new RuntimeError(where, "Script exceeded its memory budget of " + maxMemory + " bytes");
+        }
+    }
+}
@@ -13,13 +13,16 @@ abstract public class Stmt {
     R visitBlockStmt(Block stmt);
     R visitBreakStmt(Break stmt);
     R visitClassStmt(Class stmt);
+    R visitCountedLoopStmt(CountedLoop stmt);
     R visitExpressionStmt(Expression stmt);
     R visitFunctionStmt(Function stmt);
     R visitIfStmt(If stmt);
+    R visitImportStmt(Import stmt);
     R visitPrintStmt(Print stmt);
     R visitReturnStmt(Return stmt);
     R visitVarStmt(Var stmt);
     R visitWhileStmt(While stmt);
+    R visitYieldStmt(Yield stmt);
     }
  static public class Block extends Stmt {
     public Block(List<Stmt> statements) {
@@ -63,6 +66,23 @@ abstract public class Stmt {
     public final List<Stmt.Function> methods;
     public final List<Stmt.Function> classMethods;
 
+}
+ static public class CountedLoop extends Stmt {
+    public CountedLoop(Expr.Binary condition, Expr.Assign increment, Stmt body) {
+    this.condition = condition;
+    this.increment = increment;
+    this.body = body;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visitCountedLoopStmt(this);
+    }
+
+    public final Expr.Binary condition;
+    public final Expr.Assign increment;
+    public final Stmt body;
+
 }
  static public class Expression extends Stmt {
     public Expression(Expr expression) {
@@ -108,6 +128,21 @@ abstract public class Stmt {
     public final Stmt thenBranch;
     public final Stmt elseBranch;
 
+}
+ static public class Import extends Stmt {
+    public Import(Token keyword, List<Token> path) {
+    this.keyword = keyword;
+    this.path = path;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visitImportStmt(this);
+    }
+
+    public final Token keyword;
+    public final List<Token> path;
+
 }
  static public class Print extends Stmt {
     public Print(Expr expression) {
@@ -166,6 +201,21 @@ abstract public class Stmt {
     public final Expr condition;
     public final Stmt body;
 
+}
+ static public class Yield extends Stmt {
+    public Yield(Token keyword, Expr value) {
+    this.keyword = keyword;
+    this.value = value;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visitYieldStmt(this);
+    }
+
+    public final Token keyword;
+    public final Expr value;
+
 }
 
     public abstract <R> R accept(Visitor<R> visitor);
@@ -0,0 +1,43 @@
+package Jolox.lexical_scanner;
+
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Decodes source text straight out of a byte buffer, usually a memory-mapped file, a window at a time. The file's
+ * bytes stay in the page cache and are never copied onto the heap as a whole.
+ */
+public class MappedSourceReader extends Reader {
+    private final ByteBuffer bytes;
+    private final CharsetDecoder decoder;
+    private boolean flushed = false;
+
+    public MappedSourceReader(ByteBuffer bytes, Charset charset) {
+        this.bytes = bytes.duplicate();
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) {
+        if(flushed) return -1;
+
+        CharBuffer out = CharBuffer.wrap(buffer, offset, length);
+        CoderResult result = decoder.decode(bytes, out, true);
+        if(result.isUnderflow() && decoder.flush(out).isUnderflow()) {
+            flushed = true;
+        }
+
+        int read = out.position() - offset;
+        return read == 0 && flushed ? -1 : read;
+    }
+
+    @Override
+    public void close() {}
+}
@@ -2,55 +2,72 @@ package Jolox.lexical_scanner;
 
 import Jolox.utils.ErrorReporter;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 import static Jolox.lexical_scanner.TokenType.*;
 
-public class Scanner {
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
+/**
+ * Turns source text into tokens on demand. Input is pulled from a {@link Reader} into a window that only has to hold
+ * the token currently being scanned, so neither the whole source nor the whole token list is ever kept in memory
+ * unless the caller asks for it through {@link #scanTokens()}.
+ */
+public class Scanner implements TokenSource {
+    private static final int WINDOW_SIZE = 8192;
+    // Whole numbers with at most this many digits are exactly representable as doubles
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private final Reader source;
+    private final ErrorReporter errorReporter;
+    private char[] window = new char[WINDOW_SIZE];
+    private int limit = 0;
+    private boolean exhausted = false;
+    private Token scanned;
     private int start = 0;
     private int current = 0;
     private int line = 1;
 
-    private static final Map<String, TokenType> keywords;
-
-    static {
-        keywords = new HashMap<>();
-        keywords.put("and", AND);
-        keywords.put("break", BREAK);
-        keywords.put("class", CLASS);
-        keywords.put("else", ELSE);
-        keywords.put("false", FALSE);
-        keywords.put("for", FOR);
-        keywords.put("fun", FUN);
-        keywords.put("if", IF);
-        keywords.put("nil", NIL);
-        keywords.put("or", OR);
-        keywords.put("print", PRINT);
-        keywords.put("return", RETURN);
-        keywords.put("super", SUPER);
-        keywords.put("this", THIS);
-        keywords.put("true", TRUE);
-        keywords.put("var", VAR);
-        keywords.put("while", WHILE);
-    }
-
-    public Scanner(String source) {
+    public Scanner(String source, ErrorReporter errorReporter) {
+        this(new StringReader(source), errorReporter);
+    }
+
+    public Scanner(Reader source, ErrorReporter errorReporter) {
         this.source = source;
+        this.errorReporter = errorReporter;
     }
 
     public List<Token> scanTokens() {
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = nextToken();
+            tokens.add(token);
+        } while (token.getType() != EOF);
+
+        return tokens;
+    }
+
+    /**
+     * Scans just far enough to produce the next token. Once the input is exhausted every call returns EOF.
+     */
+    @Override
+    public Token nextToken() {
         while (!isAtEnd()) {
             start = current;
             scanToken();
+            if(scanned != null) {
+                Token token = scanned;
+                scanned = null;
+                return token;
+            }
         }
 
-        tokens.add(new Token(EOF, "", null, line));
-        return tokens;
+        return new Token(EOF, EOF.lexeme, null, line);
     }
 
     private void scanToken() {
@@ -74,7 +91,10 @@ public class Scanner {
             case '>' -> addToken(match('=') ? GREATER_EQUAL : GREATER);
             case '/' -> {
                 if (match('/')) {
-                    while (peek() != '\n' && !isAtEnd()) advance();
+                    while (peek() != '\n' && !isAtEnd()) {
+                        advance();
+                        start = current;    // Comments produce no token, so the window needn't keep them
+                    }
                 }
                 else if (match('*')) {
                     commentBlock();
@@ -95,7 +115,7 @@ public class Scanner {
                     identifier();
                 }
                 else {
-                    ErrorReporter.getInstance().error(line, "Unexpected character.");
+                    errorReporter.error(line, "Unexpected character.");
                 }
             }
         }
@@ -104,21 +124,84 @@ public class Scanner {
     private void identifier() {
         while (isAlphaNumeric(peek())) advance();
 
-        String text = source.substring(start, current);
-        TokenType type = keywords.get(text);
-        if (type == null) type = IDENTIFIER;
-        addToken(type);
+        addToken(identifierType());
+    }
+
+    private TokenType identifierType() {
+        switch (window[start]) {
+            case 'a': return checkKeyword(1, "nd", AND);
+            case 'b': return checkKeyword(1, "reak", BREAK);
+            case 'c': return checkKeyword(1, "lass", CLASS);
+            case 'e': return checkKeyword(1, "lse", ELSE);
+            case 'f':
+                if(current - start > 1) {
+                    switch (window[start + 1]) {
+                        case 'a': return checkKeyword(2, "lse", FALSE);
+                        case 'o': return checkKeyword(2, "r", FOR);
+                        case 'u': return checkKeyword(2, "n", FUN);
+                    }
+                }
+                break;
+            case 'i':
+                if(current - start > 1) {
+                    switch (window[start + 1]) {
+                        case 'f': return checkKeyword(2, "", IF);
+                        case 'm': return checkKeyword(2, "port", IMPORT);
+                    }
+                }
+                break;
+            case 'n': return checkKeyword(1, "il", NIL);
+            case 'o': return checkKeyword(1, "r", OR);
+            case 'p': return checkKeyword(1, "rint", PRINT);
+            case 'r': return checkKeyword(1, "eturn", RETURN);
+            case 's': return checkKeyword(1, "uper", SUPER);
+            case 't':
+                if(current - start > 1) {
+                    switch (window[start + 1]) {
+                        case 'h': return checkKeyword(2, "is", THIS);
+                        case 'r': return checkKeyword(2, "ue", TRUE);
+                    }
+                }
+                break;
+            case 'v': return checkKeyword(1, "ar", VAR);
+            case 'w': return checkKeyword(1, "hile", WHILE);
+            case 'y': return checkKeyword(1, "ield", YIELD);
+        }
+
+        return IDENTIFIER;
+    }
+
+    private TokenType checkKeyword(int offset, String rest, TokenType type) {
+        if(current - start != offset + rest.length()) return IDENTIFIER;
+
+        for(int i = 0; i < rest.length(); i++) {
+            if(window[start + offset + i] != rest.charAt(i)) return IDENTIFIER;
+        }
+
+        return type;
     }
 
     private void number() {
-        while (isDigit(peek())) advance();
+        // Whole numbers that fit in a double's mantissa are accumulated as they are scanned instead of parsed
+        long value = window[start] - '0';
+        int digits = 1;
+        while (isDigit(peek())) {
+            value = value * 10 + (advance() - '0');
+            digits++;
+        }
+
+        boolean isWhole = true;
         if (peek() == '.' && isDigit((peekNext()))) {
+            isWhole = false;
             advance();
             while (isDigit(peek())) advance();
         }
 
-        addToken(NUMBER, Double.parseDouble(source.substring(start,current)));
-
+        if(isWhole && digits <= MAX_EXACT_DIGITS) {
+            addToken(NUMBER, (double) value);
+        } else {
+            addToken(NUMBER, Double.parseDouble(text(start, current)));
+        }
     }
 
     private void string() {
@@ -128,22 +211,22 @@ public class Scanner {
         }
 
         if(isAtEnd()) {
-            ErrorReporter.getInstance().error(line, "Unterminated String");
+            errorReporter.error(line, "Unterminated String");
             return;
         }
 
         advance();
-        String value = source.substring(start + 1, current - 1);
-        addToken(STRING, value);
+        addToken(STRING, text(start + 1, current - 1));
     }
 
     private void commentBlock() {
         while (!isEndOfCommentBlock()) {
             if(isAtEnd()) {
-                ErrorReporter.getInstance().error(line, "Unterminated Comment Block");
+                errorReporter.error(line, "Unterminated Comment Block");
                 return;
             }
             if(peek() == '\n') line++;
+            start = current;
             if(peek() == '/' && peekNext() == '*') {
                 advance();
                 advance();
@@ -157,7 +240,7 @@ public class Scanner {
 
     private boolean match(char expected) {
         if(isAtEnd()) return false;
-        if(source.charAt(current) != expected) return false;
+        if(window[current] != expected) return false;
 
         current++;
         return true;
@@ -165,12 +248,12 @@ public class Scanner {
 
     private char peek() {
         if (isAtEnd()) return '\0';
-        return source.charAt(current);
+        return window[current];
     }
 
     private char peekNext() {
-        if (current + 1 >= source.length()) return '\0';
-        return source.charAt(current+1);
+        if (current + 1 >= limit && !fill(current + 2)) return '\0';
+        return window[current+1];
     }
 
     private boolean isEndOfCommentBlock() {
@@ -192,21 +275,59 @@ public class Scanner {
     }
 
     private boolean isAtEnd() {
-        return current >= source.length();
+        return current >= limit && !fill(current + 1);
     }
 
     private char advance() {
-        char current_char = source.charAt(current);
+        char current_char = window[current];
         current++;
         return current_char;
     }
 
+    private String text(int from, int to) {
+        return new String(window, from, to - from);
+    }
+
+    /**
+     * Reads more input until the window holds at least {@code required} characters, dropping everything before the
+     * start of the current token first. Returns false if the input ends before that.
+     */
+    private boolean fill(int required) {
+        if(exhausted) return false;
+
+        if(start > 0) {
+            System.arraycopy(window, start, window, 0, limit - start);
+            limit -= start;
+            current -= start;
+            required -= start;
+            start = 0;
+        }
+
+        try {
+            while (limit < required) {
+                if(limit == window.length) window = Arrays.copyOf(window, window.length * 2);
+
+                int read = source.read(window, limit, window.length - limit);
+                if(read < 0) {
+                    exhausted = true;
+                    source.close();
+                    return false;
+                }
+                limit += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return true;
+    }
+
     private void addToken(TokenType type) {
         addToken(type, null);
     }
 
     private void addToken(TokenType type, Object literal) {
-        String text = source.substring(start, current);
-        tokens.add(new Token(type, text, literal, line));
+        String text = type.lexeme != null ? type.lexeme : text(start, current);
+        scanned = new Token(type, text, literal, line);
     }
 }
\ No newline at end of file
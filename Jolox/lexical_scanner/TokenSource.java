@@ -0,0 +1,8 @@
+package Jolox.lexical_scanner;
+
+public interface TokenSource {
+    /**
+     * Returns the next token of the input, or an EOF token once the input is exhausted.
+     */
+    Token nextToken();
+}
@@ -2,22 +2,29 @@ package Jolox.lexical_scanner;
 
 public enum TokenType {
     // Single-character tokens.
-    LEFT_PAREN, RIGHT_PAREN, LEFT_BRACE, RIGHT_BRACE,
-    COMMA, DOT, MINUS, PLUS, SEMICOLON, SLASH, STAR,
-    QUESTION, COLON,
+    LEFT_PAREN("("), RIGHT_PAREN(")"), LEFT_BRACE("{"), RIGHT_BRACE("}"),
+    COMMA(","), DOT("."), MINUS("-"), PLUS("+"), SEMICOLON(";"), SLASH("/"), STAR("*"),
+    QUESTION("?"), COLON(":"),
 
     // One or two character tokens.
-    BANG, BANG_EQUAL,
-    EQUAL, EQUAL_EQUAL,
-    GREATER, GREATER_EQUAL,
-    LESS, LESS_EQUAL,
+    BANG("!"), BANG_EQUAL("!="),
+    EQUAL("="), EQUAL_EQUAL("=="),
+    GREATER(">"), GREATER_EQUAL(">="),
+    LESS("<"), LESS_EQUAL("<="),
 
     // Literals.
     IDENTIFIER, STRING, NUMBER,
 
     // Keywords.
-    AND, BREAK, CLASS, ELSE, FALSE, FUN, FOR, IF, NIL, OR,
-    PRINT, RETURN, SUPER, THIS, TRUE, VAR, WHILE,
+    AND("and"), BREAK("break"), CLASS("class"), ELSE("else"), FALSE("false"), FUN("fun"), FOR("for"), IF("if"),
+    IMPORT("import"), NIL("nil"), OR("or"), PRINT("print"), RETURN("return"), SUPER("super"), THIS("this"), TRUE("true"),
+    VAR("var"), WHILE("while"), YIELD("yield"),
 
-    EOF
+    EOF("");
+
+    // Every token of this type has this lexeme, so scanning one never needs to copy it out of the source
+    public final String lexeme;
+
+    TokenType() { this(null); }
+    TokenType(String lexeme) { this.lexeme = lexeme; }
 }
@@ -0,0 +1,157 @@
+package Jolox.olox;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Builds an Application Class Data Sharing archive of the classes Jolox loads, so that short scripts skip most of the
+ * class loading and verification that dominates their run time. A training JVM runs the given scripts through
+ * {@code Olox --train} and dumps every class it loaded into the archive on exit; scripts started afterwards with
+ * {@code -XX:SharedArchiveFile} map those classes in instead of loading them from the classpath. The archive is only
+ * valid for the JVM that built it and the classpath it was built with, which is why both are taken from this process.
+ * The JVM only archives classes loaded from jars, so Jolox has to be packaged first.
+ *
+ * <pre>
+ * jar cf jolox.jar -C out/production/Olox .
+ * java -cp jolox.jar Jolox.olox.ClassArchive jolox.jsa benchmarks/corpus
+ * java -XX:SharedArchiveFile=jolox.jsa -cp jolox.jar Jolox.olox.Olox script.olx
+ * </pre>
+ *
+ * Once the archive is written, every script is started with and without it and the median wall-clock time of each is
+ * reported, along with how many of the loaded classes came from an archive.
+ */
+public class ClassArchive {
+    private static final String USAGE = """
+            Usage: ClassArchive <archive> <script or directory>... [options]
+              --runs <n>    timed starts per script with and without the archive (default: 5, 0 skips the report)""";
+
+    record Classes(int loaded, int shared) {}
+
+    private final String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    private final String classPath = System.getProperty("java.class.path");
+    private Path archive;
+    private final List<Path> scripts = new ArrayList<>();
+    private int runs = 5;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        ClassArchive classArchive = new ClassArchive();
+        try {
+            classArchive.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        if(!classArchive.build()) System.exit(1);
+        if(classArchive.runs > 0) classArchive.report();
+    }
+
+    private void parseArguments(String[] args) throws IOException {
+        for(int i = 0; i < args.length; i++) {
+            if(args[i].equals("--runs")) {
+                if(i + 1 == args.length) throw new IllegalArgumentException("--runs needs a value");
+                runs = Integer.parseInt(args[++i]);
+            } else if(archive == null) {
+                archive = Path.of(args[i]).toAbsolutePath();
+            } else {
+                addScripts(Path.of(args[i]));
+            }
+        }
+
+        if(archive == null || scripts.isEmpty()) throw new IllegalArgumentException("No archive or scripts given");
+        for(String entry : classPath.split(File.pathSeparator)) {
+            if(Files.isDirectory(Path.of(entry))) {
+                throw new IllegalArgumentException("Classes can only be archived from jars, but " + entry
+                        + " is a directory");
+            }
+        }
+    }
+
+    private void addScripts(Path path) throws IOException {
+        if(!Files.isDirectory(path)) {
+            scripts.add(path);
+            return;
+        }
+
+        try (Stream<Path> files = Files.list(path)) {
+            files.filter(file -> file.getFileName().toString().endsWith(".olx")).sorted().forEach(scripts::add);
+        }
+    }
+
+    /**
+     * Runs the training JVM. Its output is discarded by the training run itself; errors are passed through.
+     */
+    private boolean build() throws IOException, InterruptedException {
+        Files.deleteIfExists(archive);
+
+        // The JVM warns about every JDK class it leaves out of the archive, which is expected and not worth showing
+        List<String> command = new ArrayList<>(List.of(java, "-XX:ArchiveClassesAtExit=" + archive, "-Xlog:cds=error",
+                "-cp", classPath, Olox.class.getName(), "--train"));
+        scripts.forEach(script -> command.add(script.toString()));
+        int exitCode = new ProcessBuilder(command).inheritIO().start().waitFor();
+
+        if(exitCode != 0 || !Files.isRegularFile(archive)) {
+            System.err.println("Training run failed with exit code " + exitCode + "; no archive was written");
+            return false;
+        }
+
+        System.out.printf("Wrote %s (%d KB) from %d scripts%n", archive, Files.size(archive) / 1024, scripts.size());
+        return true;
+    }
+
+    private void report() throws IOException, InterruptedException {
+        System.out.printf("%-24s %12s %12s %18s%n", "script", "default ms", "archived ms", "shared classes");
+        for(Path script : scripts) {
+            long plain = median(script, false);
+            long archived = median(script, true);
+            Classes classes = classes(script);
+            System.out.printf("%-24s %12.1f %12.1f %18s%n", script.getFileName(), plain / 1e6, archived / 1e6,
+                    classes.shared() + " / " + classes.loaded());
+        }
+    }
+
+    private long median(Path script, boolean useArchive) throws IOException, InterruptedException {
+        long[] times = new long[runs];
+        for(int i = 0; i < runs; i++) times[i] = start(script, useArchive, null);
+        Arrays.sort(times);
+        return times[runs / 2];
+    }
+
+    /**
+     * Starts the script once more with class loading logged to a file, so the log doesn't mix with the script's
+     * output. Classes the log lists as coming from a "shared objects file" were mapped from the JDK's archive or ours.
+     */
+    private Classes classes(Path script) throws IOException, InterruptedException {
+        File log = File.createTempFile("olox-classes", ".log");
+        try {
+            start(script, true, log);
+            List<String> lines = Files.readAllLines(log.toPath(), StandardCharsets.UTF_8);
+            int shared = (int) lines.stream().filter(line -> line.contains("source: shared objects file")).count();
+            return new Classes(lines.size(), shared);
+        } finally {
+            Files.deleteIfExists(log.toPath());
+        }
+    }
+
+    private long start(Path script, boolean useArchive, File log) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of(java));
+        if(useArchive) command.add("-XX:SharedArchiveFile=" + archive);
+        if(log != null) command.add("-Xlog:class+load=info:file=" + log);
+        command.addAll(List.of("-cp", classPath, Olox.class.getName(), script.toString()));
+
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD);
+        long start = System.nanoTime();
+        builder.start().waitFor();
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,204 @@
+package Jolox.olox;
+
+import Jolox.interpreter.AstArena;
+import Jolox.interpreter.Output;
+import Jolox.interpreter.Program;
+import Jolox.interpreter.ResourceGovernor;
+import Jolox.utils.ErrorReporter;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static Jolox.utils.ExitCode.*;
+
+/**
+ * Runs scripts for {@link DaemonClient} in one long-lived JVM, so that the JIT compiles the interpreter once instead
+ * of every run starting cold. The daemon listens on a Unix domain socket, -Djolox.daemon.socket or
+ * jolox-&lt;user&gt;.sock in the temporary directory, which only its owner may connect to. Every connection runs one
+ * script in an interpreter context of its own and is served on a thread of its own.
+ * <p>
+ * The client sends the absolute path of the script with {@link DataOutputStream#writeUTF}. The daemon answers with
+ * frames, each a type byte and an int: {@link #STDOUT} and {@link #STDERR} frames carry that many bytes of UTF-8
+ * output, and the {@link #EXIT} frame that ends the answer carries the exit code a standalone run would have had.
+ * <p>
+ * Scripts are compiled through the shared {@link ProgramPool}, so a script whose source the daemon has seen before,
+ * under any path, is not compiled again. Other settings, such as resource limits, flush policy and the arena, are the daemon's own
+ * -Djolox properties and apply to every script it runs. Each connection's script has a governor of its own, which is
+ * cancelled when the client disconnects.
+ */
+public class Daemon {
+    public static final byte EXIT = 0;
+    public static final byte STDOUT = 1;
+    public static final byte STDERR = 2;
+
+    private final ExecutorService workers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "olox-daemon-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public static Path socketPath() {
+        String path = System.getProperty("jolox.daemon.socket");
+        if(path != null) return Path.of(path);
+        return Path.of(System.getProperty("java.io.tmpdir"), "jolox-" + System.getProperty("user.name") + ".sock");
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path socket = socketPath();
+        if(isListening(socket)) {
+            System.err.println("A daemon is already listening on " + socket);
+            System.exit(1);
+        }
+        // Left behind by a daemon that was killed
+        Files.deleteIfExists(socket);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            try {
+                Files.setPosixFilePermissions(socket, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException ignored) {
+                // Not a POSIX file system; the directory's permissions are all there is
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                System.err.println("Program pool: " + ProgramPool.shared().statistics());
+                try {
+                    Files.deleteIfExists(socket);
+                } catch (IOException ignored) {
+
+                }
+            }));
+
+            System.err.println("Listening on " + socket);
+            new Daemon().serve(server);
+        }
+    }
+
+    private static boolean isListening(Path socket) {
+        if(!Files.exists(socket)) return false;
+
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(socket)).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void serve(ServerSocketChannel server) throws IOException {
+        for(;;) {
+            SocketChannel client = server.accept();
+            workers.execute(() -> {
+                try (client) {
+                    handle(client);
+                } catch (IOException | UncheckedIOException ignored) {
+                    // The client went away, so the rest of the output and the exit code have nowhere to go
+                }
+            });
+        }
+    }
+
+    private void handle(SocketChannel client) throws IOException {
+        Path script = Path.of(new DataInputStream(Channels.newInputStream(client)).readUTF());
+        DataOutputStream frames = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)));
+        PrintWriter err = new PrintWriter(new FrameWriter(frames, STDERR), true);
+        ErrorReporter errorReporter = new ErrorReporter(err);
+        ResourceGovernor governor = ResourceGovernor.fromSystemProperties();
+        workers.execute(() -> watch(client, governor));
+
+        int exitCode;
+        try {
+            Program program = ProgramPool.shared().compileFile(script, errorReporter);
+            if(program != null) {
+                Olox.execute(script, program, Olox.useArena ? AstArena.lower(program) : null,
+                        new Output(new FrameWriter(frames, STDOUT), Olox.flushPolicy), errorReporter, governor);
+            }
+            exitCode = Olox.exitCode(errorReporter);
+        } catch (IOException e) {
+            err.println("Could not read " + script + ": " + e);
+            exitCode = NO_INPUT.code;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (RuntimeException | Error e) {
+            // A failure of the daemon itself, such as a stack overflow; the client still gets an exit code
+            err.println("Internal error running " + script + ": " + e);
+            exitCode = RUNTIME_ERROR.code;
+        }
+
+        synchronized (frames) {
+            frames.writeByte(EXIT);
+            frames.writeInt(exitCode);
+            frames.flush();
+        }
+    }
+
+    /**
+     * Cancels the connection's script once the client has gone away, such as after Ctrl-C. Output would only notice
+     * at its next flush, and a script that prints nothing would keep its worker busy forever. The client sends
+     * nothing after the script's path, so a read only returns when it closes its end. The read reads the channel
+     * directly, as its streams would hold the channel's lock and block the script's output while waiting.
+     */
+    private static void watch(SocketChannel client, ResourceGovernor governor) {
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            while(client.read(buffer) >= 0) buffer.clear();
+        } catch (IOException ignored) {
+            // Closed by handle once the script has finished, or the connection was reset
+        }
+        governor.cancel();
+    }
+
+    /**
+     * Sends everything written to it as frames of one type. Both of a connection's writers share its stream, so a
+     * frame is written whole before the other can start one.
+     */
+    private static class FrameWriter extends Writer {
+        private final DataOutputStream frames;
+        private final byte type;
+
+        FrameWriter(DataOutputStream frames, byte type) {
+            this.frames = frames;
+            this.type = type;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            if(length == 0) return;
+
+            byte[] bytes = new String(buffer, offset, length).getBytes(StandardCharsets.UTF_8);
+            synchronized (frames) {
+                frames.writeByte(type);
+                frames.writeInt(bytes.length);
+                frames.write(bytes);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (frames) {
+                frames.flush();
+            }
+        }
+
+        @Override
+        public void close() {
+
+        }
+    }
+}
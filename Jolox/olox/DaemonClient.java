@@ -0,0 +1,66 @@
+package Jolox.olox;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+/**
+ * Runs a script on the {@link Daemon}, copying its output to this process's stdout and stderr and exiting with its
+ * exit code. When no daemon is listening, or when there isn't exactly one script to run, it does what {@link Olox}
+ * would, in this process. It touches few classes of its own so that its JVM starts as quickly as one can.
+ */
+public class DaemonClient {
+    public static void main(String[] args) throws IOException {
+        if(args.length != 1) {
+            Olox.main(args);
+            return;
+        }
+
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(Daemon.socketPath()));
+        } catch (IOException e) {
+            Olox.main(args);
+            return;
+        }
+
+        try (channel) {
+            DataOutputStream request = new DataOutputStream(Channels.newOutputStream(channel));
+            request.writeUTF(Path.of(args[0]).toAbsolutePath().toString());
+            request.flush();
+            System.exit(copyOutput(new DataInputStream(Channels.newInputStream(channel))));
+        }
+    }
+
+    private static int copyOutput(DataInputStream frames) throws IOException {
+        OutputStream out = new FileOutputStream(FileDescriptor.out);
+        OutputStream err = new FileOutputStream(FileDescriptor.err);
+        byte[] buffer = new byte[8192];
+        try {
+            for(;;) {
+                byte type = frames.readByte();
+                int length = frames.readInt();
+                if(type == Daemon.EXIT) return length;
+
+                OutputStream target = type == Daemon.STDERR ? err : out;
+                while(length > 0) {
+                    int read = frames.read(buffer, 0, Math.min(length, buffer.length));
+                    if(read < 0) throw new EOFException();
+                    target.write(buffer, 0, read);
+                    length -= read;
+                }
+            }
+        } catch (EOFException e) {
+            err.write("The daemon closed the connection before the script finished\n".getBytes());
+            return 1;
+        }
+    }
+}
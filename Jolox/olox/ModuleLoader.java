@@ -0,0 +1,101 @@
+package Jolox.olox;
+
+import Jolox.exceptions.RuntimeError;
+import Jolox.interpreter.Program;
+import Jolox.interpreter.Stmt;
+import Jolox.lexical_scanner.Token;
+import Jolox.utils.ErrorReporter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Compiles imported modules once per process. Modules a program imports at its top level are compiled in parallel on
+ * the fork-join pool as soon as the program is compiled, so by the time an import statement runs its module is
+ * usually ready. Compiled modules are kept in the shared {@link ProgramPool} like any other program, so a module is
+ * compiled again only if its source changed, and old versions of edited modules are dropped within the pool's budget.
+ */
+public class ModuleLoader {
+    private static final String EXTENSION = ".olx";
+
+    // Modules being compiled, so that a module is only compiled once however many programs import it at a time
+    private static final Map<Path, CompletableFuture<Program>> compiling = new ConcurrentHashMap<>();
+
+    private ModuleLoader() {}
+
+    public static String nameOf(Stmt.Import stmt) {
+        return stmt.path.stream().map(Token::getLexeme).collect(Collectors.joining("."));
+    }
+
+    /**
+     * Starts compiling every module the program imports at its top level, without waiting for any of them.
+     */
+    public static void preload(Program program, Path modulePath) {
+        for(Stmt statement : program.getStatements()) {
+            if(statement instanceof Stmt.Import stmt) {
+                try {
+                    compile(locate(modulePath, stmt), modulePath);
+                } catch (IOException ignored) {
+                    // Reported when the import statement runs
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the compiled module the import statement refers to, waiting for it if it is still being compiled.
+     */
+    public static Program load(Path modulePath, Stmt.Import stmt) {
+        try {
+            return compile(locate(modulePath, stmt), modulePath).join();
+        } catch (IOException e) {
+            throw new RuntimeError(stmt.keyword, "Could not find module " + nameOf(stmt));
+        } catch (CompletionException e) {
+            throw new RuntimeError(stmt.keyword, "Could not import module " + nameOf(stmt) + ": " +
+                    e.getCause().getMessage());
+        }
+    }
+
+    private static CompletableFuture<Program> compile(Path file, Path modulePath) throws IOException {
+        if(!Files.isRegularFile(file)) throw new NoSuchFileException(file.toString());
+
+        CompletableFuture<Program> program = compiling.computeIfAbsent(file, path ->
+                CompletableFuture.supplyAsync(() -> compileModule(path, modulePath), ForkJoinPool.commonPool()));
+        program.whenComplete((compiled, error) -> compiling.remove(file, program));
+        return program;
+    }
+
+    private static Program compileModule(Path file, Path modulePath) {
+        StringWriter errors = new StringWriter();
+        Program program;
+        try {
+            program = ProgramPool.shared().compileFile(file, new ErrorReporter(new PrintWriter(errors, true)));
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+
+        if(program == null) throw new CompletionException(new IllegalStateException(errors.toString().trim()));
+
+        preload(program, modulePath);
+        return program;
+    }
+
+    private static Path locate(Path modulePath, Stmt.Import stmt) {
+        Path file = modulePath;
+        for(int i = 0; i < stmt.path.size() - 1; i++) {
+            file = file.resolve(stmt.path.get(i).getLexeme());
+        }
+
+        return file.resolve(stmt.path.get(stmt.path.size() - 1).getLexeme() + EXTENSION).toAbsolutePath().normalize();
+    }
+}
@@ -1,29 +1,53 @@
 package Jolox.olox;
 
+import Jolox.interpreter.AstArena;
 import Jolox.interpreter.Interpreter;
+import Jolox.interpreter.Output;
+import Jolox.interpreter.Program;
+import Jolox.interpreter.ResourceGovernor;
 import Jolox.interpreter.Stmt;
 import Jolox.parser.Parser;
 import Jolox.lexical_scanner.Scanner;
-import Jolox.lexical_scanner.Token;
+import Jolox.lexical_scanner.MappedSourceReader;
+import Jolox.profiler.CompilePhaseEvent;
+import Jolox.profiler.Profiler;
 import Jolox.resolver.Resolver;
+import Jolox.serializer.ProgramCache;
 import Jolox.utils.ErrorReporter;
+import Jolox.utils.FlushPolicy;
 import Jolox.utils.RunMode;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 
 import static Jolox.utils.ExitCode.*;
 
 public class Olox {
-    static ErrorReporter errorReporter = ErrorReporter.getInstance();
-    static Interpreter interpreter = Interpreter.getInstance();
+    // Set -Djolox.precompile=false to always compile from source and never write .olxc files
+    private static final boolean usePrecompiled = Boolean.parseBoolean(System.getProperty("jolox.precompile", "true"));
+    // Set -Djolox.arena=true to run scripts from a compact AstArena instead of the tree the parser built
+    static final boolean useArena = Boolean.getBoolean("jolox.arena");
+    // Set -Djolox.flush=on_newline to see a script's output line by line, or on_exit to write it all at the end
+    static final FlushPolicy flushPolicy =
+            FlushPolicy.valueOf(System.getProperty("jolox.flush", "on_size").toUpperCase());
+
     public static void main(String[] args) throws IOException {
-        if(args.length >  1) {
+        if(args.length > 1 && args[0].equals("--train")) {
+            train(List.of(args).subList(1, args.length));
+        }
+        else if(args.length >  1) {
             System.out.println("Usage: jolox [script_name.lx]");
             System.exit(COMMAND_LINE_USAGE_ERROR.code);
         }
@@ -35,38 +59,165 @@ public class Olox {
     }
 
     private static void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Path.of(path));
-        run(new String(bytes, Charset.defaultCharset()), RunMode.FILE);
-        if(errorReporter.hasBuildError()) System.exit(USER_DATA_INCORRECT.code);
-        if(errorReporter.hasRuntimeError()) System.exit(RUNTIME_ERROR.code);
+        ErrorReporter errorReporter = execute(Path.of(path), Output.stdout(flushPolicy), useArena);
+
+        int exitCode = exitCode(errorReporter);
+        if(exitCode != 0) System.exit(exitCode);
+    }
+
+    static int exitCode(ErrorReporter errorReporter) {
+        if(errorReporter.hasBuildError()) return USER_DATA_INCORRECT.code;
+        if(errorReporter.hasRuntimeError()) return RUNTIME_ERROR.code;
+        return 0;
+    }
+
+    private static ErrorReporter execute(Path script, Output output, boolean arena) throws IOException {
+        ErrorReporter errorReporter = new ErrorReporter();
+        Program program = compileFile(script, errorReporter);
+        if(program != null) {
+            execute(script, program, arena ? AstArena.lower(program) : null, output, errorReporter,
+                    ResourceGovernor.fromSystemProperties());
+        }
+        return errorReporter;
+    }
+
+    /**
+     * Runs a compiled script in an interpreter context of its own, held to the given governor's limits. If an arena is
+     * given it is the lowered form of the program, and that is what runs.
+     */
+    static void execute(Path script, Program program, AstArena arena, Output output, ErrorReporter errorReporter,
+                        ResourceGovernor governor) {
+        Interpreter interpreter = new Interpreter(errorReporter);
+        interpreter.setGovernor(governor);
+        interpreter.setOutput(output);
+        Path modulePath = script.toAbsolutePath().getParent();
+        interpreter.setModulePath(modulePath);
+
+        ModuleLoader.preload(program, modulePath);
+        if(arena != null) {
+            interpreter.interpret(arena, RunMode.FILE);
+        } else {
+            interpreter.interpret(program, RunMode.FILE);
+        }
+    }
+
+    /**
+     * The training run behind {@link ClassArchive}: compiles every script from source, then runs it under both
+     * interpreters with its output discarded. The first run leaves a precompiled form behind for the second to read,
+     * so the front end, the program cache and both interpreters all end up in the class archive.
+     */
+    private static void train(List<String> paths) throws IOException {
+        Output discard = new Output(Writer.nullWriter(), FlushPolicy.ON_EXIT);
+        for(String path : paths) {
+            Path script = Path.of(path);
+            compile(Files.readString(script, Charset.defaultCharset()), RunMode.FILE, new ErrorReporter());
+            execute(script, discard, false);
+            execute(script, discard, true);
+        }
     }
 
     private static void runPrompt() throws IOException {
         InputStreamReader input = new InputStreamReader(System.in);
         BufferedReader reader = new BufferedReader(input);
+        ErrorReporter errorReporter = new ErrorReporter();
+        Interpreter interpreter = new Interpreter(errorReporter);
+        interpreter.setOutput(Output.stdout(FlushPolicy.ON_NEWLINE));
 
         for(;;) {
             System.out.print(">> ");
             String line = reader.readLine();
             if (line == null) break;    // CTRL-D exits interactive loop (CMD-D for Mac)
-            run(line, RunMode.REPL);
+            run(line, RunMode.REPL, errorReporter, interpreter);
             errorReporter.setBuildErrorStatus(false);    // Ensure error flag is reset for each interactive command
         }
     }
 
-    private static void run(String source, RunMode mode) {
-        Scanner scanner = new Scanner(source);
-        List<Token> tokens = scanner.scanTokens();
-        Parser parser = new Parser(tokens, mode);
+    private static void run(String source, RunMode mode, ErrorReporter errorReporter, Interpreter interpreter) {
+        Program program = compile(source, mode, errorReporter);
+        if(program == null) return;
+
+        if(useArena) {
+            interpreter.interpret(AstArena.lower(program), mode);
+        } else {
+            interpreter.interpret(program, mode);
+        }
+    }
+
+    /**
+     * Compiles a script file, reusing its precompiled form if one is up to date and writing one otherwise.
+     * Returns null if a build error was reported.
+     */
+    public static Program compileFile(Path script, ErrorReporter errorReporter) throws IOException {
+        try (FileChannel channel = FileChannel.open(script, StandardOpenOption.READ)) {
+            MappedByteBuffer source = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return compileFile(script, source, errorReporter);
+        }
+    }
+
+    /**
+     * Like {@link #compileFile(Path, ErrorReporter)}, but compiles the given contents of the script file instead of
+     * reading it, so the program is the one those exact bytes describe.
+     */
+    public static Program compileFile(Path script, ByteBuffer source, ErrorReporter errorReporter) {
+        Program program = usePrecompiled ? ProgramCache.load(script, source) : null;
+        if(program == null) {
+            program = compile(new MappedSourceReader(source, Charset.defaultCharset()), RunMode.FILE, errorReporter);
+            if(program != null && usePrecompiled) ProgramCache.store(script, source, program);
+        }
+
+        return program;
+    }
+
+    /**
+     * Runs the front end over the given source as a compilation unit of its own. Functions declared in it keep its
+     * resolution data alive, so a REPL line's data is released once nothing declared on that line is reachable.
+     * Returns null if a build error was reported.
+     */
+    public static Program compile(String source, RunMode mode, ErrorReporter errorReporter) {
+        return compile(new StringReader(source), mode, errorReporter);
+    }
+
+    /**
+     * Like {@link #compile(String, RunMode, ErrorReporter)}, but the parser pulls tokens from the reader as it goes
+     * instead of the source being scanned up front.
+     */
+    public static Program compile(Reader source, RunMode mode, ErrorReporter errorReporter) {
+        // Tokens are scanned as the parser pulls them, so scanning is timed as part of parsing
+        CompilePhaseEvent parse = beginPhase();
+        Scanner scanner = new Scanner(source, errorReporter);
+        Parser parser = new Parser(scanner, mode, errorReporter);
         List<Stmt> statements = parser.parse();
+        endPhase(parse, "parse", statements.size());
 
-        if(errorReporter.hasBuildError()) return;
+        if(errorReporter.hasBuildError()) return null;
 
-        Resolver resolver = new Resolver(interpreter);
+        CompilePhaseEvent resolve = beginPhase();
+        Resolver resolver = new Resolver(errorReporter);
         resolver.resolve(statements);
+        endPhase(resolve, "resolve", resolver.getResolution().size());
+
+        if(errorReporter.hasBuildError()) return null;
+
+        return new Program(statements, resolver.getResolution());
+    }
+
+    /**
+     * Starts timing a compile phase as a {@link CompilePhaseEvent}, or returns null if the event is not recorded.
+     */
+    private static CompilePhaseEvent beginPhase() {
+        if(!Profiler.recording()) return null;
+
+        CompilePhaseEvent event = new CompilePhaseEvent();
+        if(!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
 
-        if(errorReporter.hasBuildError()) return;
+    private static void endPhase(CompilePhaseEvent event, String phase, long size) {
+        if(event == null) return;
 
-        interpreter.interpret(statements, mode);
+        event.phase = phase;
+        event.size = size;
+        event.commit();
     }
 }
@@ -0,0 +1,151 @@
+package Jolox.olox;
+
+import Jolox.interpreter.Program;
+import Jolox.serializer.ProgramCache;
+import Jolox.utils.ErrorReporter;
+import Jolox.utils.RunMode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Compiled programs shared by every interpreter context in the process, keyed by the SHA-256 of their source rather
+ * than by where the source came from. Tenants that submit the same helper code get the same {@link Program}, which
+ * is safe because programs are never modified, so the heap grows with the amount of distinct code and not with the
+ * number of tenants.
+ * <p>
+ * The pool holds at most -Djolox.pool.maxBytes bytes of source (8 MB by default), dropping the least recently used
+ * programs beyond that; the compiled form of a script takes roughly proportional space. When several contexts ask for
+ * the same uncached source at once, one of them compiles it and the others wait for the result. Sources with build
+ * errors are not kept, and each caller compiles them itself so that it gets the errors reported.
+ */
+public class ProgramPool {
+    private static final ProgramPool shared = new ProgramPool(Long.getLong("jolox.pool.maxBytes", 8L * 1024 * 1024));
+
+    public record Statistics(long hits, long misses, long evictions, int programs, long bytes) {
+        public double hitRate() {
+            return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d programs (%d KB of source), %d hits, %d misses (%.1f%% hit rate), %d evicted",
+                    programs, bytes / 1024, hits, misses, hitRate() * 100, evictions);
+        }
+    }
+
+    private record Entry(CompletableFuture<Program> program, int bytes) {}
+
+    private final long maxBytes;
+    // In access order, so the eldest entry is the least recently used
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ProgramPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static ProgramPool shared() {
+        return shared;
+    }
+
+    /**
+     * Returns the compiled program for the given source, compiling it if the pool doesn't have it.
+     * Returns null if a build error was reported.
+     */
+    public Program compile(String source, ErrorReporter errorReporter) {
+        byte[] encoded = source.getBytes(StandardCharsets.UTF_8);
+        return lookup(ProgramCache.hash(ByteBuffer.wrap(encoded)), encoded.length,
+                () -> Olox.compile(source, RunMode.FILE, errorReporter));
+    }
+
+    /**
+     * Like {@link #compile(String, ErrorReporter)} for a script file. The file is read once, and a miss compiles the
+     * bytes that were hashed, so an edit made meanwhile can't leave a program under another source's key. A miss goes
+     * through {@link Olox#compileFile}, so the file's precompiled form is used when it is up to date.
+     */
+    public Program compileFile(Path script, ErrorReporter errorReporter) throws IOException {
+        ByteBuffer source = ByteBuffer.wrap(Files.readAllBytes(script));
+        return lookup(ProgramCache.hash(source), source.remaining(),
+                () -> Olox.compileFile(script, source, errorReporter));
+    }
+
+    public synchronized Statistics statistics() {
+        return new Statistics(hits, misses, evictions, entries.size(), bytes);
+    }
+
+    private Program lookup(byte[] hash, int size, Supplier<Program> compiler) {
+        String key = HexFormat.of().formatHex(hash);
+        CompletableFuture<Program> future;
+        boolean compiling = false;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if(entry != null) {
+                hits++;
+                future = entry.program();
+            } else {
+                misses++;
+                future = new CompletableFuture<>();
+                entries.put(key, new Entry(future, size));
+                bytes += size;
+                compiling = true;
+                evict();
+            }
+        }
+
+        if(compiling) {
+            Program program;
+            try {
+                program = compiler.get();
+            } catch (RuntimeException | Error e) {
+                remove(key, future);
+                future.completeExceptionally(e);
+                throw e;
+            }
+
+            if(program == null) remove(key, future);
+            future.complete(program);
+            return program;
+        }
+
+        try {
+            Program program = future.join();
+            if(program != null) return program;
+        } catch (CompletionException e) {
+            // Failed for whoever compiled it, so it will fail here too
+        }
+        // Compile it again so that the errors are reported to this caller
+        return compiler.get();
+    }
+
+    private synchronized void remove(String key, CompletableFuture<Program> future) {
+        Entry entry = entries.get(key);
+        if(entry != null && entry.program() == future) {
+            entries.remove(key);
+            bytes -= entry.bytes();
+        }
+    }
+
+    // Always keeps the newest entry, however large it is
+    private void evict() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while(bytes > maxBytes && entries.size() > 1) {
+            Entry entry = eldest.next();
+            eldest.remove();
+            bytes -= entry.bytes();
+            evictions++;
+        }
+    }
+}
@@ -1,12 +1,13 @@
 /**
  * This Parser parses the following grammar for Olox
  * program -> declaration* EOF;
- * declaration -> classDecl | funDecl | varDecl | statement;
+ * declaration -> classDecl | funDecl | varDecl | importDecl | statement;
  * classDecl -> "class" IDENTIFIER ( "<" IDENTIFIER) ? "{" function* "}";
  * funDecl -> "fun" function;
  * function -> IDENTIFIER "(" parameters? ")" block;
  * parameters -> IDENTIFIER ( "," IDENTIFIER)* ;
  * varDecl -> "var" IDENTIFIER ( "=" expression)? ";";
+ * importDecl -> "import" IDENTIFIER ( "." IDENTIFIER )* ";";
  * statement -> exprStmt | forStmt | ifStmt | printStmt | returnStmt | whileStmt | block;
  * returnStmt -> "return" expression? ";" ;
  * block -> "{" declaration* "}";
@@ -15,6 +16,7 @@
  * ifStmt -> "if" "(" expression ")" statement ( "else" statement )? ;
  * printStmt -> "print" expression ";"
  * whileStmt -> "while" "(" expression ")" statement;
+ * Expressions are parsed by precedence climbing over a table of per-token rules, with one level per rule below.
  * expression → comma;
  * comma -> ternary ( "," ternary )* ;
  * ternary -> assignment ( "?" comma ":" ternary)?
@@ -35,6 +37,7 @@
 package Jolox.parser;
 
 import Jolox.lexical_scanner.Token;
+import Jolox.lexical_scanner.TokenSource;
 import Jolox.lexical_scanner.TokenType;
 import Jolox.utils.FunctionType;
 import Jolox.utils.RunMode;
@@ -50,16 +53,84 @@ import java.util.List;
 public class Parser {
 
     private static class ParseError extends RuntimeException {}
-    private final List<Token> tokens;
+
+    // Binding power of the expression grammar's levels, loosest first
+    private enum Precedence {
+        NONE, COMMA, TERNARY, ASSIGNMENT, OR, AND, EQUALITY, COMPARISON, TERM, FACTOR, UNARY, CALL;
+
+        Precedence next() {
+            return values()[ordinal() + 1];
+        }
+    }
+
+    private interface PrefixRule {
+        Expr parse(Parser parser, Token token);
+    }
+
+    private interface InfixRule {
+        Expr parse(Parser parser, Expr left, Token operator);
+    }
+
+    private record Rule(PrefixRule prefix, InfixRule infix, Precedence precedence) {}
+
+    // Expression rules indexed by token type ordinal
+    private static final Rule[] rules = new Rule[TokenType.values().length];
+
+    static {
+        Arrays.fill(rules, new Rule(null, null, Precedence.NONE));
+        rule(LEFT_PAREN, Parser::grouping, Parser::call, Precedence.CALL);
+        rule(DOT, null, Parser::get, Precedence.CALL);
+        rule(COMMA, Parser::missingLeftOperand, Parser::binary, Precedence.COMMA);
+        rule(QUESTION, Parser::missingLeftOperand, Parser::ternary, Precedence.TERNARY);
+        rule(COLON, Parser::missingLeftOperand, null, Precedence.NONE);
+        rule(EQUAL, null, Parser::assignment, Precedence.ASSIGNMENT);
+        rule(OR, null, Parser::logical, Precedence.OR);
+        rule(AND, null, Parser::logical, Precedence.AND);
+        rule(BANG_EQUAL, Parser::missingLeftOperand, Parser::binary, Precedence.EQUALITY);
+        rule(EQUAL_EQUAL, Parser::missingLeftOperand, Parser::binary, Precedence.EQUALITY);
+        rule(GREATER, Parser::missingLeftOperand, Parser::binary, Precedence.COMPARISON);
+        rule(GREATER_EQUAL, Parser::missingLeftOperand, Parser::binary, Precedence.COMPARISON);
+        rule(LESS, Parser::missingLeftOperand, Parser::binary, Precedence.COMPARISON);
+        rule(LESS_EQUAL, Parser::missingLeftOperand, Parser::binary, Precedence.COMPARISON);
+        rule(PLUS, Parser::missingLeftOperand, Parser::binary, Precedence.TERM);
+        rule(MINUS, Parser::unary, Parser::binary, Precedence.TERM);
+        rule(SLASH, Parser::missingLeftOperand, Parser::binary, Precedence.FACTOR);
+        rule(STAR, Parser::missingLeftOperand, Parser::binary, Precedence.FACTOR);
+        rule(BANG, Parser::unary, null, Precedence.NONE);
+        rule(FALSE, (parser, token) -> new Expr.Literal(false), null, Precedence.NONE);
+        rule(TRUE, (parser, token) -> new Expr.Literal(true), null, Precedence.NONE);
+        rule(NIL, (parser, token) -> new Expr.Literal(null), null, Precedence.NONE);
+        rule(NUMBER, (parser, token) -> new Expr.Literal(token.getLiteral()), null, Precedence.NONE);
+        rule(STRING, (parser, token) -> new Expr.Literal(token.getLiteral()), null, Precedence.NONE);
+        rule(IDENTIFIER, (parser, token) -> new Expr.Variable(token), null, Precedence.NONE);
+        rule(THIS, (parser, token) -> new Expr.This(token), null, Precedence.NONE);
+        rule(SUPER, Parser::superAccess, null, Precedence.NONE);
+        rule(FUN, (parser, token) -> parser.functionBody(FunctionType.FUNCTION), null, Precedence.NONE);
+    }
+
+    private static void rule(TokenType type, PrefixRule prefix, InfixRule infix, Precedence precedence) {
+        rules[type.ordinal()] = new Rule(prefix, infix, precedence);
+    }
+    private final TokenSource tokens;
 
     private final RunMode mode;
+    private final ErrorReporter errorReporter;
 
-    private int current = 0;
+    // The parser never looks further than one token back or one token ahead of the current one
+    private Token previous;
+    private Token current;
+    private Token next;
     private int loopDepth = 0;
 
-    public Parser(List<Token> tokens, RunMode mode) {
+    public Parser(List<Token> tokens, RunMode mode, ErrorReporter errorReporter) {
+        this(tokens.iterator()::next, mode, errorReporter);
+    }
+
+    public Parser(TokenSource tokens, RunMode mode, ErrorReporter errorReporter) {
         this.tokens = tokens;
         this.mode = mode;
+        this.errorReporter = errorReporter;
+        this.current = tokens.nextToken();
     }
 
     public List<Stmt> parse() {
@@ -72,7 +143,7 @@ public class Parser {
     }
 
     private Expr expression() {
-        return comma();
+        return parsePrecedence(Precedence.COMMA);
     }
 
     private Stmt declaration() {
@@ -83,6 +154,7 @@ public class Parser {
                 return function(FunctionType.FUNCTION);
             }
             if(match(VAR)) return varDeclaration();
+            if(match(IMPORT)) return importDeclaration();
 
             return statement();
         } catch (ParseError error) {
@@ -120,6 +192,7 @@ public class Parser {
         if(match(PRINT)) return printStatement();
         if(match(RETURN)) return returnStatement();
         if(match(WHILE)) return whileStatement();
+        if(match(YIELD)) return yieldStatement();
         if(match(LEFT_BRACE)) return new Stmt.Block(block());
         return expressionStatement();
     }
@@ -157,12 +230,16 @@ public class Parser {
             loopDepth++;
             Stmt body = statement();
 
-            if(increment != null) {
-                body = new Stmt.Block(Arrays.asList(body, new Stmt.Expression(increment)));
-            }
+            if(isCounted(initializer, condition, increment)) {
+                body = new Stmt.CountedLoop((Expr.Binary) condition, (Expr.Assign) increment, body);
+            } else {
+                if(increment != null) {
+                    body = new Stmt.Block(Arrays.asList(body, new Stmt.Expression(increment)));
+                }
 
-            if(condition == null) condition = new Expr.Literal(true);
-            body = new Stmt.While(condition, body);
+                if(condition == null) condition = new Expr.Literal(true);
+                body = new Stmt.While(condition, body);
+            }
 
             if(initializer != null) {
                 body = new Stmt.Block(Arrays.asList(initializer, body));
@@ -174,6 +251,29 @@ public class Parser {
         }
     }
 
+    /**
+     * Whether the clauses of a for loop have the form (var i = a; i &lt; b; i = i + c), with any comparison in the
+     * condition and + or - in the increment. Such loops get a {@link Stmt.CountedLoop} in place of the desugared while.
+     */
+    private static boolean isCounted(Stmt initializer, Expr condition, Expr increment) {
+        if(!(initializer instanceof Stmt.Var var) || var.initializer == null) return false;
+        String counter = var.name.getLexeme();
+
+        if(!(condition instanceof Expr.Binary comparison) || !isVariable(comparison.left, counter)) return false;
+        switch (comparison.operator.getType()) {
+            case LESS, LESS_EQUAL, GREATER, GREATER_EQUAL -> {}
+            default -> { return false; }
+        }
+
+        if(!(increment instanceof Expr.Assign assign) || !assign.name.getLexeme().equals(counter)) return false;
+        if(!(assign.value instanceof Expr.Binary step) || !isVariable(step.left, counter)) return false;
+        return step.operator.getType() == PLUS || step.operator.getType() == MINUS;
+    }
+
+    private static boolean isVariable(Expr expr, String name) {
+        return expr instanceof Expr.Variable variable && variable.name.getLexeme().equals(name);
+    }
+
     private Stmt ifStatement() {
         consume(LEFT_PAREN, "Expected ( after if");
         Expr condition = expression();
@@ -204,6 +304,17 @@ public class Parser {
         return new Stmt.Return(keyword, value);
     }
 
+    private Stmt yieldStatement() {
+        Token keyword = previous();
+        Expr value = null;
+        if(!check(SEMICOLON)) {
+            value = expression();
+        }
+
+        consume(SEMICOLON, "Expected ; after yield statement");
+        return new Stmt.Yield(keyword, value);
+    }
+
     private Stmt varDeclaration() {
         Token name = consume(IDENTIFIER, "Expected variable name");
         Expr initializer = null;
@@ -215,6 +326,17 @@ public class Parser {
         return new Stmt.Var(name, initializer);
     }
 
+    private Stmt importDeclaration() {
+        Token keyword = previous();
+        List<Token> path = new ArrayList<>();
+        do {
+            path.add(consume(IDENTIFIER, "Expected module name"));
+        } while (match(DOT));
+
+        consume(SEMICOLON, "Expected ; after import");
+        return new Stmt.Import(keyword, path);
+    }
+
     private Stmt whileStatement() {
         consume(LEFT_PAREN, "Expected ( after while");
         Expr condition = expression();
@@ -274,91 +396,121 @@ public class Parser {
         return statements;
     }
 
-    private Expr comma() {
-        Expr expr = ternary();
+    /**
+     * Parses an expression whose operators all bind at least as tightly as the given precedence. The grammar's
+     * levels become entries in the rule table: a token's prefix rule starts an operand and its infix rule continues
+     * one, so a literal costs a single table lookup rather than a descent through every level.
+     */
+    private Expr parsePrecedence(Precedence precedence) {
+        Token token = peek();
+        PrefixRule prefix = rules[token.getType().ordinal()].prefix();
+        if(prefix == null) throw parsingError(token, "Expected Expression.");
+        advance();
+        Expr expr = prefix.parse(this, token);
 
-        while(match(COMMA)) {
-            Token comma = previous();
-            Expr right = ternary();
-            expr = new Expr.Binary(expr, comma, right);
+        while(true) {
+            Rule rule = rules[peek().getType().ordinal()];
+            if(rule.infix() == null || rule.precedence().compareTo(precedence) < 0) return expr;
+            expr = rule.infix().parse(this, expr, advance());
         }
-
-        return expr;
     }
 
-    private Expr ternary() {
-        Expr expr = assignment();
-
-        if(match(QUESTION)) {
-            Expr left = comma();
-            consume(COLON, "Expected : after then branch of ternary expression");
-            Expr right = ternary();
-            expr = new Expr.Ternary(expr, left, right);
-        }
+    private Expr grouping(Token paren) {
+        Expr expr = expression();
+        consume(RIGHT_PAREN, "Expected ')' after expression.");
+        return new Expr.Grouping(expr);
+    }
 
-        return expr;
+    private Expr unary(Token operator) {
+        Expr right = parsePrecedence(Precedence.UNARY);
+        return new Expr.Unary(operator, right);
     }
 
-    private Expr assignment() {
-        Expr expr = or();
-        if(match(EQUAL)) {
-            Token equals = previous();
-            Expr value =  assignment();
+    private Expr superAccess(Token keyword) {
+        consume(DOT, "Expected . after super keyword");
+        Token method = consume(IDENTIFIER, "Expected superclass method name");
+        return new Expr.Super(keyword, method);
+    }
 
-            if(expr instanceof Expr.Variable) {
-                Token name = ((Expr.Variable)expr).name;
-                return new Expr.Assign(name, value);
+    /**
+     * A binary operator with nothing on its left. The error is reported, the right hand side is parsed at the
+     * operator's own level so that parsing can carry on, and the expression is dropped.
+     */
+    private Expr missingLeftOperand(Token operator) {
+        switch (operator.getType()) {
+            case COMMA -> {
+                error(operator, "Missing left hand expression.");
+                parsePrecedence(Precedence.COMMA);
             }
-            else if(expr instanceof Expr.Get get) {
-                return new Expr.Set(get.object, get.name, value);
+            case QUESTION, COLON -> {
+                error(operator, "Missing expression in ternary condition.");
+                parsePrecedence(Precedence.TERNARY);
+            }
+            case BANG_EQUAL, EQUAL_EQUAL -> {
+                error(operator, "Missing left hand expression in equality");
+                parsePrecedence(Precedence.EQUALITY);
+            }
+            case PLUS -> {
+                error(operator, "Missing left hand expression in addition");
+                parsePrecedence(Precedence.TERM);
+            }
+            case SLASH, STAR -> {
+                error(operator, "Missing left hand expression in multiplication/division");
+                parsePrecedence(Precedence.FACTOR);
+            }
+            default -> {
+                error(operator, "Missing left hand expression in comparison");
+                parsePrecedence(Precedence.COMPARISON);
             }
-
-            ErrorReporter.getInstance().error(equals, "Invalid assignment target");
         }
 
-        return expr;
+        return null;
     }
 
-    private Expr or() {
-        Expr expr = and();
-        while (match(OR)) {
-            Token operator = previous();
-            Expr right = and();
-            expr = new Expr.Logical(expr, operator, right);
-        }
-
-        return expr;
+    private Expr binary(Expr left, Token operator) {
+        Expr right = parsePrecedence(rules[operator.getType().ordinal()].precedence().next());
+        return new Expr.Binary(left, operator, right);
     }
 
-    private Expr and() {
-        Expr expr = equality();
-        while (match(AND)) {
-            Token operator = previous();
-            Expr right = equality();
-            expr = new Expr.Logical(expr, operator, right);
-        }
+    private Expr logical(Expr left, Token operator) {
+        Expr right = parsePrecedence(rules[operator.getType().ordinal()].precedence().next());
+        return new Expr.Logical(left, operator, right);
+    }
 
-        return expr;
+    private Expr ternary(Expr condition, Token question) {
+        Expr left = expression();
+        consume(COLON, "Expected : after then branch of ternary expression");
+        Expr right = parsePrecedence(Precedence.TERNARY);
+        return new Expr.Ternary(condition, left, right);
     }
 
-    private Expr equality() {
-        Expr expr = comparison();
+    private Expr assignment(Expr target, Token equals) {
+        Expr value = parsePrecedence(Precedence.ASSIGNMENT);
 
-        while(match(BANG_EQUAL, EQUAL_EQUAL)) {
-            Token operator = previous();
-            Expr right = comparison();
-            expr = new Expr.Binary(expr, operator, right);
+        if(target instanceof Expr.Variable variable) {
+            return new Expr.Assign(variable.name, value);
+        }
+        else if(target instanceof Expr.Get get) {
+            return new Expr.Set(get.object, get.name, value);
         }
 
-        return expr;
+        errorReporter.error(equals, "Invalid assignment target");
+        return target;
     }
 
-    private boolean match(TokenType... types) {
-        for(TokenType type : types) {
-            if(check(type)) {
-                advance();
-                return true;
-            }
+    private Expr call(Expr callee, Token paren) {
+        return finishCall(callee);
+    }
+
+    private Expr get(Expr object, Token dot) {
+        Token name = consume(IDENTIFIER, "Expected property name after .");
+        return new Expr.Get(object, name);
+    }
+
+    private boolean match(TokenType type) {
+        if(check(type)) {
+            advance();
+            return true;
         }
 
         return false;
@@ -370,7 +522,11 @@ public class Parser {
     }
 
     private Token advance() {
-        if(!isAtEnd()) current++;
+        if(!isAtEnd()) {
+            previous = current;
+            current = next != null ? next : tokens.nextToken();
+            next = null;
+        }
         return previous();
     }
 
@@ -379,57 +535,11 @@ public class Parser {
     }
 
     private Token peek() {
-        return tokens.get(current);
+        return current;
     }
 
     private Token previous() {
-        return tokens.get(current - 1);
-    }
-
-    private Expr comparison() {
-        Expr expr = term();
-
-        while (match(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)) {
-            Token operator = previous();
-            Expr right = term();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-
-        return expr;
-    }
-
-    private Expr term() {
-        Expr expr = factor();
-
-        while (match(PLUS, MINUS)) {
-            Token operator = previous();
-            Expr right = factor();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-
-        return expr;
-    }
-
-    private Expr factor() {
-        Expr expr = unary();
-
-        while (match(STAR, SLASH)) {
-            Token operator = previous();
-            Expr right = unary();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-
-        return expr;
-    }
-
-    private Expr unary() {
-        if(match(BANG, MINUS)) {
-            Token operator = previous();
-            Expr right = unary();
-            return new Expr.Unary(operator, right);
-        }
-
-        return call();
+        return previous;
     }
 
     private Expr finishCall(Expr callee) {
@@ -439,7 +549,7 @@ public class Parser {
                 if (arguments.size() >= 255) {
                     error(peek(), "Can't have more than 255 arguments to a function");
                 }
-                arguments.add(equality());
+                arguments.add(parsePrecedence(Precedence.EQUALITY));
             } while (match(COMMA));
         }
 
@@ -447,91 +557,6 @@ public class Parser {
         return new Expr.Call(callee, paren, arguments);
     }
 
-    private Expr call() {
-        Expr expr = primary();
-
-        while(true) {
-            if(match(LEFT_PAREN)) {
-                expr = finishCall(expr);
-            } else if (match(DOT)){
-                Token name = consume(IDENTIFIER, "Expected property name after .");
-                expr = new Expr.Get(expr, name);
-            }
-            else {
-                break;
-            }
-        }
-
-        return expr;
-    }
-
-    private Expr primary() {
-        if(match(FALSE)) return new Expr.Literal(false);
-        if(match(TRUE)) return new Expr.Literal(true);
-        if(match(NIL)) return new Expr.Literal(null);
-
-        if(match(NUMBER, STRING)) return new Expr.Literal(previous().getLiteral());
-
-        if(match(IDENTIFIER)) return new Expr.Variable(previous());
-
-        if(match(LEFT_PAREN)) {
-            Expr expr = expression();
-            consume(RIGHT_PAREN, "Expected ')' after expression.");
-            return new Expr.Grouping(expr);
-        }
-
-        if(match(COMMA)) {
-            error(previous(), "Missing left hand expression.");
-            comma();
-            return null;
-        }
-
-        if(match(QUESTION, COLON)) {
-            error(previous(), "Missing expression in ternary condition.");
-            ternary();
-            return null;
-        }
-
-        if(match(BANG_EQUAL, EQUAL_EQUAL)) {
-            error(previous(), "Missing left hand expression in equality");
-            equality();
-            return null;
-        }
-
-        if(match(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)) {
-            error(previous(), "Missing left hand expression in comparison");
-            comparison();
-            return null;
-        }
-
-        if(match(PLUS)) {
-            error(previous(), "Missing left hand expression in addition");
-            term();
-            return null;
-        }
-
-        if(match(SLASH, STAR)) {
-            error(previous(), "Missing left hand expression in multiplication/division");
-            factor();
-            return null;
-        }
-
-        if(match(SUPER)) {
-            Token keyword = previous();
-            consume(DOT, "Expected . after super keyword");
-            Token method = consume(IDENTIFIER, "Expected superclass method name");
-            return new Expr.Super(keyword, method);
-        }
-
-        if(match(THIS)) return new Expr.This(previous());
-
-        if(match(FUN)) {
-            return functionBody(FunctionType.FUNCTION);
-        }
-
-        throw parsingError(peek(), "Expected Expression.");
-    }
-
     private Token consume(TokenType type, String message) {
         if(ignoreSemiColon(type) || check(type)) return advance();
         throw parsingError(peek(), message);
@@ -539,8 +564,9 @@ public class Parser {
 
     private boolean checkNext() {
         if(isAtEnd()) return false;
-        if(tokens.get(current + 1).getType() == EOF) return false;
-        return tokens.get(current + 1).getType() == TokenType.IDENTIFIER;
+        if(next == null) next = tokens.nextToken();
+        if(next.getType() == EOF) return false;
+        return next.getType() == TokenType.IDENTIFIER;
     }
 
     private boolean ignoreSemiColon(TokenType type) {
@@ -548,13 +574,13 @@ public class Parser {
     }
 
     private ParseError parsingError(Token token, String message) {
-        ErrorReporter.getInstance().error(token, message);
+        errorReporter.error(token, message);
         return new ParseError();
     }
 
     private void error(Token token, String message) {
 
-        ErrorReporter.getInstance().error(token, message);
+        errorReporter.error(token, message);
     }
 
     private void synchronize() {
@@ -567,6 +593,7 @@ public class Parser {
                 case CLASS:
                 case FUN:
                 case VAR:
+                case IMPORT:
                 case FOR:
                 case IF:
                 case WHILE:
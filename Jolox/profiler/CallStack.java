@@ -0,0 +1,52 @@
+package Jolox.profiler;
+
+import java.util.Arrays;
+
+/**
+ * Shadow stack of the Olox functions a single interpreter context is running, kept only while profiling. Frames are a
+ * function name and the line it was declared on (0 for frames that are not functions, such as the script itself).
+ * <p>
+ * Only the owning thread pushes and pops; the sampling thread reads the stack without synchronisation, so a sample
+ * taken during a push or pop may be off by a frame. That is the price of keeping calls free of locks and fences.
+ */
+public class CallStack {
+    private String[] names = new String[64];
+    private int[] lines = new int[64];
+    private int depth = 0;
+
+    CallStack() {}
+
+    public void push(String name, int line) {
+        if(depth == names.length) {
+            lines = Arrays.copyOf(lines, depth * 2);
+            names = Arrays.copyOf(names, depth * 2);
+        }
+        names[depth] = name;
+        lines[depth] = line;
+        depth++;
+    }
+
+    public void pop() {
+        names[--depth] = null;
+    }
+
+    /**
+     * Appends the stack in collapsed form, outermost frame first and frames separated by ';', and returns whether it
+     * had any frames.
+     */
+    boolean collapse(StringBuilder builder) {
+        String[] names = this.names;
+        int[] lines = this.lines;
+        int depth = Math.min(this.depth, Math.min(names.length, lines.length));
+        boolean empty = true;
+        for(int i = 0; i < depth; i++) {
+            String name = names[i];
+            if(name == null) continue;
+            if(!empty) builder.append(';');
+            builder.append(name);
+            if(lines[i] > 0) builder.append(':').append(lines[i]);
+            empty = false;
+        }
+        return !empty;
+    }
+}
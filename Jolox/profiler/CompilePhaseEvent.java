@@ -0,0 +1,23 @@
+package Jolox.profiler;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One phase of compiling a script, timed around the same code that runs when nothing is recorded. The scanner hands
+ * the parser tokens as it asks for them, so the parse phase includes scanning.
+ */
+@Name("jolox.CompilePhase")
+@Label("Compile Phase")
+@Category({"Olox", "Compiler"})
+@Description("Duration and output size of parsing or resolving an Olox compilation unit")
+public class CompilePhaseEvent extends jdk.jfr.Event {
+    @Label("Phase")
+    public String phase;
+
+    @Label("Size")
+    @Description("Statements parsed or local variable references resolved")
+    public long size;
+}
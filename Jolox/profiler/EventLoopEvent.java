@@ -0,0 +1,32 @@
+package Jolox.profiler;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * One run of a script's event loop, from the end of its statements until its last callback returned.
+ */
+@Name("jolox.EventLoop")
+@Label("Event Loop")
+@Category("Olox")
+@Description("Callbacks run by a script's event loop, with how many queued up and how long they waited")
+public class EventLoopEvent extends jdk.jfr.Event {
+    @Label("Callbacks")
+    public long callbacks;
+
+    @Label("Max Queue Depth")
+    @Description("Most callbacks waiting at once, counting timers that were not due yet")
+    public int maxQueueDepth;
+
+    @Label("Mean Latency")
+    @Description("Mean time from a callback being ready to it starting to run")
+    @Timespan(Timespan.NANOSECONDS)
+    public long meanLatency;
+
+    @Label("Max Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    public long maxLatency;
+}
@@ -0,0 +1,24 @@
+package Jolox.profiler;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A call to an Olox function that took longer than the recording's threshold for this event (10 ms by default).
+ */
+@Name("jolox.FunctionCall")
+@Label("Function Call")
+@Category("Olox")
+@Description("Call to an Olox function that took longer than the threshold")
+@Threshold("10 ms")
+public class FunctionCallEvent extends jdk.jfr.Event {
+    @Label("Function")
+    public String function;
+
+    @Label("Line")
+    @Description("Line the function was declared on, 0 for anonymous functions")
+    public int line;
+}
@@ -0,0 +1,60 @@
+package Jolox.profiler;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number of instances of an Olox class created since the previous event for that class, emitted once per period
+ * (every second by default) for each class that was instantiated in it.
+ * <p>
+ * Instantiations are only counted while the event is enabled; {@link #count(Object, String)} checks that with a
+ * throwaway event instance, which the JIT removes along with the check when no recording has it enabled. Counts
+ * from the last, partial period of a recording are not emitted.
+ */
+@Name("jolox.InstantiationCount")
+@Label("Instantiation Count")
+@Category("Olox")
+@Description("Instances of an Olox class created during the last period")
+@Period("1 s")
+@StackTrace(false)
+public class InstantiationCountEvent extends jdk.jfr.Event {
+    // Keyed by the class object itself, as distinct classes may share a name. Entries only live for one period.
+    private static final Map<Object, Counter> counters = new ConcurrentHashMap<>();
+
+    private record Counter(String name, LongAdder instances) {}
+
+    static {
+        FlightRecorder.addPeriodicEvent(InstantiationCountEvent.class, InstantiationCountEvent::emit);
+    }
+
+    @Label("Class")
+    public String className;
+
+    @Label("Instances")
+    public long instances;
+
+    public static void count(Object klass, String name) {
+        if(!new InstantiationCountEvent().isEnabled()) return;
+        counters.computeIfAbsent(klass, key -> new Counter(name, new LongAdder())).instances().increment();
+    }
+
+    private static void emit() {
+        for(Object klass : counters.keySet()) {
+            Counter counter = counters.remove(klass);
+            if(counter == null) continue;
+            InstantiationCountEvent event = new InstantiationCountEvent();
+            event.className = counter.name();
+            event.instances = counter.instances().sum();
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package Jolox.profiler;
+
+import jdk.jfr.FlightRecorder;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+/**
+ * Sampling profiler for Olox code. Enabled with -Djolox.profile=&lt;file&gt;, which makes every interpreter context keep
+ * a {@link CallStack} and starts a daemon thread that records all of them every -Djolox.profile.interval milliseconds
+ * (10 by default). When the JVM exits the samples are written to the file as collapsed stacks, one
+ * "frame;frame;frame count" line per distinct stack, ready for flamegraph.pl or speedscope, and the
+ * -Djolox.profile.top functions with the most self time (20 by default) are reported on stderr.
+ * <p>
+ * With the property unset {@link #ENABLED} is a constant false, so the checks in the interpreter compile away.
+ */
+public final class Profiler {
+    public static final boolean ENABLED = System.getProperty("jolox.profile") != null;
+
+    // Stacks of live contexts; a context that is no longer reachable drops out on its own
+    private static final Set<CallStack> stacks = Collections.newSetFromMap(new WeakHashMap<>());
+    // Sample counts by collapsed stack, only touched by the sampling thread until it has stopped
+    private static final Map<String, Long> samples = new HashMap<>();
+    private static volatile boolean running = true;
+
+    static {
+        if(ENABLED) start();
+    }
+
+    private Profiler() {}
+
+    /**
+     * Whether Flight Recorder is running, from -XX:StartFlightRecording or started later through jcmd. The Jolox
+     * events are only created once it is: loading the first event class initializes JFR, which takes longer than
+     * running a short script does.
+     */
+    public static boolean recording() {
+        return FlightRecorder.isInitialized();
+    }
+
+    /**
+     * Creates the shadow stack for a new interpreter context and registers it for sampling.
+     */
+    public static CallStack newCallStack() {
+        CallStack stack = new CallStack();
+        synchronized (stacks) {
+            stacks.add(stack);
+        }
+        return stack;
+    }
+
+    private static void start() {
+        long interval = Long.getLong("jolox.profile.interval", 10);
+        Thread sampler = new Thread(() -> {
+            while(running) {
+                try {
+                    Thread.sleep(interval);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                sample();
+            }
+        }, "olox-profiler");
+        sampler.setDaemon(true);
+        sampler.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            running = false;
+            sampler.interrupt();
+            try {
+                sampler.join();
+            } catch (InterruptedException ignored) {
+                // Report what has been collected so far
+            }
+            report(Path.of(System.getProperty("jolox.profile")), interval, Integer.getInteger("jolox.profile.top", 20));
+        }));
+    }
+
+    private static void sample() {
+        StringBuilder builder = new StringBuilder();
+        synchronized (stacks) {
+            for(CallStack stack : stacks) {
+                builder.setLength(0);
+                if(stack.collapse(builder)) samples.merge(builder.toString(), 1L, Long::sum);
+            }
+        }
+    }
+
+    private static void report(Path output, long interval, int top) {
+        PrintWriter err = new PrintWriter(System.err, true);
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8))) {
+            new TreeMap<>(samples).forEach((stack, count) -> writer.println(stack + " " + count));
+        } catch (IOException e) {
+            err.println("Could not write profile to " + output + ": " + e.getMessage());
+        }
+
+        Map<String, long[]> functions = new HashMap<>();    // frame -> {self, total}
+        long total = 0;
+        for(Map.Entry<String, Long> entry : samples.entrySet()) {
+            String[] frames = entry.getKey().split(";");
+            long count = entry.getValue();
+            total += count;
+            functions.computeIfAbsent(frames[frames.length - 1], frame -> new long[2])[0] += count;
+            // Recursive frames count once towards the total of a sample
+            for(String frame : new HashSet<>(List.of(frames))) {
+                functions.computeIfAbsent(frame, key -> new long[2])[1] += count;
+            }
+        }
+
+        err.printf("Olox profile: %d samples every %d ms, collapsed stacks written to %s%n", total, interval, output);
+        if(total == 0) return;
+        List<Map.Entry<String, long[]>> ranked = new ArrayList<>(functions.entrySet());
+        ranked.sort((a, b) -> a.getValue()[0] != b.getValue()[0]
+                ? Long.compare(b.getValue()[0], a.getValue()[0])
+                : Long.compare(b.getValue()[1], a.getValue()[1]));
+        err.printf("%8s %8s  %s%n", "self", "total", "function");
+        for(Map.Entry<String, long[]> function : ranked.subList(0, Math.min(top, ranked.size()))) {
+            err.printf("%7.1f%% %7.1f%%  %s%n", 100.0 * function.getValue()[0] / total,
+                    100.0 * function.getValue()[1] / total, function.getKey());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package Jolox.profiler;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A runtime error reported to the user, i.e. one that stopped a script.
+ */
+@Name("jolox.RuntimeError")
+@Label("Runtime Error")
+@Category("Olox")
+@StackTrace(false)
+public class RuntimeErrorEvent extends jdk.jfr.Event {
+    @Label("Message")
+    public String message;
+
+    @Label("Line")
+    public int line;
+}
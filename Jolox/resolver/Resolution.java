@@ -0,0 +1,58 @@
+package Jolox.resolver;
+
+import Jolox.interpreter.Stmt;
+import Jolox.parser.Expr;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Scope depth and slot of every local variable reference, as computed by the {@link Resolver} or restored from a
+ * precompiled script. Entries are only ever added for expressions no interpreter has reached yet, so it can be read
+ * by any number of interpreters, on any number of threads, alongside the statements it was computed for.
+ */
+public class Resolution {
+    private final Map<Expr, Integer> locals = new ConcurrentHashMap<>();
+    private final Map<Expr, Integer> slots = new ConcurrentHashMap<>();
+    // Blocks that declare nothing and so run in the environment enclosing them
+    private final Set<Stmt.Block> scopeless = ConcurrentHashMap.newKeySet();
+    // Statements each function can be suspended inside, found the first time they are asked for
+    private final Map<Expr.Function, Set<Stmt>> suspensions = new ConcurrentHashMap<>();
+
+    public void resolve(Expr expr, int depth, int slot) {
+        locals.put(expr, depth);
+        slots.put(expr, slot);
+    }
+
+    public Integer getDepth(Expr expr) {
+        return locals.get(expr);
+    }
+
+    public int getSlot(Expr expr) {
+        return slots.get(expr);
+    }
+
+    public void markScopeless(Stmt.Block block) {
+        scopeless.add(block);
+    }
+
+    public boolean isScopeless(Stmt.Block block) {
+        return scopeless.contains(block);
+    }
+
+    /**
+     * The yield statements of the function, outside any function nested in it, along with every statement that
+     * contains one. Empty unless the function is a generator.
+     */
+    public Set<Stmt> getSuspensions(Expr.Function function) {
+        return suspensions.computeIfAbsent(function, YieldFinder::find);
+    }
+
+    /**
+     * Number of resolved local variable references.
+     */
+    public int size() {
+        return locals.size();
+    }
+}
@@ -1,6 +1,5 @@
 package Jolox.resolver;
 
-import Jolox.interpreter.Interpreter;
 import Jolox.interpreter.Stmt;
 import Jolox.lexical_scanner.Token;
 import Jolox.lexical_scanner.TokenType;
@@ -15,7 +14,8 @@ import java.util.Map;
 import java.util.Stack;
 
 public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
-    private final Interpreter interpreter;
+    private final ErrorReporter errorReporter;
+    private final Resolution resolution;
     private final Stack<Map<String, Variable>> scopes = new Stack<>();
     private FunctionType currentFunction = FunctionType.NONE;
 
@@ -39,8 +39,13 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         READ
     }
 
-    public Resolver(Interpreter interpreter) {
-        this.interpreter = interpreter;
+    public Resolver(ErrorReporter errorReporter) {
+        this.errorReporter = errorReporter;
+        this.resolution = new Resolution();
+    }
+
+    public Resolution getResolution() {
+        return resolution;
     }
 
     public void resolve(List<Stmt> statements) {
@@ -51,12 +56,29 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitBlockStmt(Stmt.Block stmt) {
+        // A block that declares nothing gets no scope, so references beneath it resolve one level shallower
+        if(declaresNothing(stmt.statements)) {
+            resolution.markScopeless(stmt);
+            resolve(stmt.statements);
+            return null;
+        }
+
         beginScope();
         resolve(stmt.statements);
         endScope();
         return null;
     }
 
+    private static boolean declaresNothing(List<Stmt> statements) {
+        for(Stmt statement : statements) {
+            if(statement instanceof Stmt.Var || statement instanceof Stmt.Function || statement instanceof Stmt.Class
+                    || statement instanceof Stmt.Import) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public Void visitBreakStmt(Stmt.Break stmt) {
         return null;
@@ -72,7 +94,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
         if(stmt.superclass != null) {
             if(stmt.name.getLexeme().equals(stmt.superclass.name.getLexeme())) {
-                ErrorReporter.getInstance().error(stmt.superclass.name, "A class can't inherit from itself");
+                errorReporter.error(stmt.superclass.name, "A class can't inherit from itself");
             }
             currentClass = ClassType.SUBCLASS;
             resolve(stmt.superclass);
@@ -106,6 +128,14 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitCountedLoopStmt(Stmt.CountedLoop stmt) {
+        resolve(stmt.condition);
+        resolve(stmt.body);
+        resolve(stmt.increment);
+        return null;
+    }
+
     @Override
     public Void visitExpressionStmt(Stmt.Expression stmt) {
         resolve(stmt.expression);
@@ -122,9 +152,21 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     }
 
     private void resolveFunction(Stmt.Function stmt, FunctionType type) {
+        resolveFunction(stmt.function, type);
+    }
+
+    private void resolveFunction(Expr.Function function, FunctionType type) {
         FunctionType enclosingFunction = currentFunction;
         currentFunction = type;
-        stmt.function.accept(this);
+        beginScope();
+        if(function.parameters != null) {
+            for (Token param : function.parameters) {
+                declare(param);
+                define(param);
+            }
+        }
+        resolve(function.body);
+        endScope();
         currentFunction = enclosingFunction;
     }
 
@@ -136,6 +178,14 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) {
+        Token name = stmt.path.get(stmt.path.size() - 1);
+        declare(name);
+        define(name);
+        return null;
+    }
+
     @Override
     public Void visitPrintStmt(Stmt.Print stmt) {
         resolve(stmt.expression);
@@ -145,12 +195,12 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitReturnStmt(Stmt.Return stmt) {
         if(currentFunction == FunctionType.NONE) {
-            ErrorReporter.getInstance().error(stmt.keyword, "Can't return from top-level code");
+            errorReporter.error(stmt.keyword, "Can't return from top-level code");
         }
 
         if(stmt.value != null) {
             if(currentFunction == FunctionType.INITIALIZER) {
-                ErrorReporter.getInstance().error(stmt.keyword, "Can't return a value from an initializer");
+                errorReporter.error(stmt.keyword, "Can't return a value from an initializer");
             }
             resolve(stmt.value);
         }
@@ -174,6 +224,18 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitYieldStmt(Stmt.Yield stmt) {
+        if(currentFunction == FunctionType.NONE) {
+            errorReporter.error(stmt.keyword, "Can't yield from top-level code");
+        } else if(currentFunction == FunctionType.INITIALIZER) {
+            errorReporter.error(stmt.keyword, "Can't yield from an initializer");
+        }
+
+        if(stmt.value != null) resolve(stmt.value);
+        return null;
+    }
+
     @Override
     public Void visitAssignExpr(Expr.Assign expr) {
         resolve(expr.value);
@@ -201,16 +263,8 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitFunctionExpr(Expr.Function expr) {
-        beginScope();
-        if(expr.parameters != null) {
-            for (Token param : expr.parameters) {
-                declare(param);
-                define(param);
-            }
-        }
-        resolve(expr.body);
-        endScope();
-
+        // An anonymous function, such as a callback, is a function of its own wherever it appears
+        resolveFunction(expr, FunctionType.FUNCTION);
         return null;
     }
 
@@ -248,10 +302,10 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitSuperExpr(Expr.Super expr) {
         if(currentClass == ClassType.NONE) {
-            ErrorReporter.getInstance().error(expr.keyword, "Can't use super outside class definition");
+            errorReporter.error(expr.keyword, "Can't use super outside class definition");
         }
         else if(currentClass == ClassType.CLASS) {
-            ErrorReporter.getInstance().error(expr.keyword, "Can't use super in class with no superclass");
+            errorReporter.error(expr.keyword, "Can't use super in class with no superclass");
         }
         resolveLocal(expr, expr.keyword, true);
         return null;
@@ -268,7 +322,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitThisExpr(Expr.This expr) {
         if(currentClass == ClassType.NONE) {
-            ErrorReporter.getInstance().error(expr.keyword, "Can't use keyword 'this' outside a class");
+            errorReporter.error(expr.keyword, "Can't use keyword 'this' outside a class");
         }
         resolveLocal(expr, expr.keyword, true);
         return null;
@@ -284,7 +338,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     public Void visitVariableExpr(Expr.Variable expr) {
         if(!scopes.isEmpty() && scopes.peek().containsKey(expr.name.getLexeme()) &&
             scopes.peek().get(expr.name.getLexeme()).state == VariableState.DECLARED ) {
-            ErrorReporter.getInstance().error(expr.name, "Can't read local variable in its own initializer");
+            errorReporter.error(expr.name, "Can't read local variable in its own initializer");
         }
 
         resolveLocal(expr, expr.name, true);
@@ -307,7 +361,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         Map<String,Variable> scope = scopes.pop();
         for(Map.Entry<String, Variable> entry : scope.entrySet()) {
             if(entry.getValue().state == VariableState.DEFINED) {
-                ErrorReporter.getInstance().error(entry.getValue().name, "Local variable is never used");
+                errorReporter.error(entry.getValue().name, "Local variable is never used");
             }
         }
     }
@@ -317,7 +371,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
         Map<String, Variable> scope = scopes.peek();
         if(scope.containsKey(name.getLexeme())) {
-            ErrorReporter.getInstance().error(name, "Variable with this name already declared in this scope");
+            errorReporter.error(name, "Variable with this name already declared in this scope");
         }
         scope.put(name.getLexeme(), new Variable(name, VariableState.DECLARED, scope.size()));
     }
@@ -330,7 +384,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     private void resolveLocal(Expr expr, Token name, boolean isRead) {
         for(int i = scopes.size() - 1; i >= 0; i--) {
             if(scopes.get(i).containsKey(name.getLexeme())) {
-                interpreter.resolve(expr, scopes.size() - 1 - i, scopes.get(i).get(name.getLexeme()).slot);
+                resolution.resolve(expr, scopes.size() - 1 - i, scopes.get(i).get(name.getLexeme()).slot);
 
                 if(isRead) {
                     scopes.get(i).get(name.getLexeme()).state = VariableState.READ;
@@ -0,0 +1,103 @@
+package Jolox.resolver;
+
+import Jolox.interpreter.Stmt;
+import Jolox.parser.Expr;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds the statements of a function body that a generator can be suspended inside: its yield statements and every
+ * block, branch and loop that has one somewhere within it. Nested functions and classes are not searched, since a
+ * yield in them belongs to them.
+ */
+class YieldFinder implements Stmt.Visitor<Boolean> {
+    private final Set<Stmt> found = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    static Set<Stmt> find(Expr.Function function) {
+        YieldFinder finder = new YieldFinder();
+        finder.any(function.body);
+        return finder.found.isEmpty() ? Set.of() : Collections.unmodifiableSet(finder.found);
+    }
+
+    private boolean any(List<Stmt> statements) {
+        boolean yields = false;
+        for(Stmt statement : statements) {
+            yields |= contains(statement);
+        }
+        return yields;
+    }
+
+    private boolean contains(Stmt stmt) {
+        if(stmt == null || !stmt.accept(this)) return false;
+        found.add(stmt);
+        return true;
+    }
+
+    @Override
+    public Boolean visitBlockStmt(Stmt.Block stmt) {
+        return any(stmt.statements);
+    }
+
+    @Override
+    public Boolean visitBreakStmt(Stmt.Break stmt) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitClassStmt(Stmt.Class stmt) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitCountedLoopStmt(Stmt.CountedLoop stmt) {
+        return contains(stmt.body);
+    }
+
+    @Override
+    public Boolean visitExpressionStmt(Stmt.Expression stmt) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitFunctionStmt(Stmt.Function stmt) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitIfStmt(Stmt.If stmt) {
+        return contains(stmt.thenBranch) | contains(stmt.elseBranch);
+    }
+
+    @Override
+    public Boolean visitImportStmt(Stmt.Import stmt) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitPrintStmt(Stmt.Print stmt) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitReturnStmt(Stmt.Return stmt) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitVarStmt(Stmt.Var stmt) {
+        return false;
+    }
+
+    @Override
+    public Boolean visitWhileStmt(Stmt.While stmt) {
+        return contains(stmt.body);
+    }
+
+    @Override
+    public Boolean visitYieldStmt(Stmt.Yield stmt) {
+        return true;
+    }
+}
@@ -0,0 +1,79 @@
+package Jolox.scripting;
+
+import Jolox.interpreter.Interpreter;
+import Jolox.interpreter.Program;
+import Jolox.interpreter.ResourceGovernor;
+import Jolox.utils.ErrorReporter;
+import Jolox.utils.RunMode;
+
+import javax.script.Bindings;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A script that went through the front end once. Each evaluation runs the shared {@link Program} in a fresh
+ * interpreter context whose globals are seeded from the context's bindings; globals the script defines or
+ * assigns are copied back into the engine scope afterwards, and bindings it never touched are left as they were. An evaluation returns the value of the script's last
+ * statement if that is an expression statement, so {@code eval("1 + 2;")} returns 3.0, and null otherwise.
+ */
+public class OloxCompiledScript extends CompiledScript {
+    private final OloxScriptEngine engine;
+    private final Program program;
+
+    OloxCompiledScript(OloxScriptEngine engine, Program program) {
+        this.engine = engine;
+        this.program = program;
+    }
+
+    @Override
+    public Object eval(ScriptContext context) throws ScriptException {
+        ErrorReporter errorReporter = new ErrorReporter(new PrintWriter(context.getErrorWriter(), true));
+        Interpreter interpreter = new Interpreter(errorReporter);
+        interpreter.setOutput(context.getWriter());
+        if(context.getAttribute(OloxScriptEngine.GOVERNOR) instanceof ResourceGovernor governor) {
+            interpreter.setGovernor(governor);
+        }
+
+        defineGlobals(interpreter, context.getBindings(ScriptContext.GLOBAL_SCOPE));
+        defineGlobals(interpreter, context.getBindings(ScriptContext.ENGINE_SCOPE));
+        // What every global held before the run; the script defined or assigned exactly those that differ after it
+        Map<String, Object> seeded = new HashMap<>();
+        for(String name : interpreter.getGlobalNames()) seeded.put(name, interpreter.getGlobal(name));
+
+        Object value = interpreter.interpretValue(program, RunMode.FILE);
+
+        Bindings engineScope = context.getBindings(ScriptContext.ENGINE_SCOPE);
+        for(String name : interpreter.getGlobalNames()) {
+            Object global = interpreter.getGlobal(name);
+            if(!seeded.containsKey(name) || seeded.get(name) != global) engineScope.put(name, global);
+        }
+
+        if(errorReporter.hasRuntimeError()) throw new ScriptException(errorReporter.getLastError());
+        return value;
+    }
+
+    @Override
+    public ScriptEngine getEngine() {
+        return engine;
+    }
+
+    private static void defineGlobals(Interpreter interpreter, Bindings bindings) {
+        if(bindings == null) return;
+
+        for(Map.Entry<String, Object> binding : bindings.entrySet()) {
+            if(binding.getKey().equals(OloxScriptEngine.GOVERNOR)) continue;
+            interpreter.setGlobal(binding.getKey(), toOlox(binding.getValue()));
+        }
+    }
+
+    // Olox only has one number type, so every Java number is seen as a double
+    private static Object toOlox(Object value) {
+        if(value instanceof Number number && !(value instanceof Double)) return number.doubleValue();
+        return value;
+    }
+}
@@ -0,0 +1,85 @@
+package Jolox.scripting;
+
+import Jolox.interpreter.Program;
+import Jolox.olox.ProgramPool;
+import Jolox.utils.ErrorReporter;
+
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+
+/**
+ * JSR-223 entry point for embedding Olox. Scripts are compiled through the shared {@link ProgramPool}, so engines
+ * evaluating the same source share one compiled program; hosts that evaluate the same script repeatedly should still
+ * {@link #compile} it once and reuse the result, which skips hashing the source.
+ */
+public class OloxScriptEngine extends AbstractScriptEngine implements Compilable {
+    /**
+     * Context attribute holding a {@link Jolox.interpreter.ResourceGovernor} that limits the scripts evaluated in it.
+     */
+    public static final String GOVERNOR = "jolox.governor";
+
+    private final OloxScriptEngineFactory factory;
+
+    OloxScriptEngine(OloxScriptEngineFactory factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public Object eval(String script, ScriptContext context) throws ScriptException {
+        return compile(script, context).eval(context);
+    }
+
+    @Override
+    public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+        return eval(read(reader), context);
+    }
+
+    @Override
+    public CompiledScript compile(String script) throws ScriptException {
+        return compile(script, getContext());
+    }
+
+    @Override
+    public CompiledScript compile(Reader script) throws ScriptException {
+        return compile(read(script));
+    }
+
+    @Override
+    public Bindings createBindings() {
+        return new SimpleBindings();
+    }
+
+    @Override
+    public ScriptEngineFactory getFactory() {
+        return factory;
+    }
+
+    private CompiledScript compile(String script, ScriptContext context) throws ScriptException {
+        ErrorReporter errorReporter = new ErrorReporter(new PrintWriter(context.getErrorWriter(), true));
+        Program program = ProgramPool.shared().compile(script, errorReporter);
+        if(program == null) throw new ScriptException(errorReporter.getLastError());
+
+        return new OloxCompiledScript(this, program);
+    }
+
+    private static String read(Reader reader) throws ScriptException {
+        StringWriter source = new StringWriter();
+        try {
+            reader.transferTo(source);
+        } catch (IOException e) {
+            throw new ScriptException(e);
+        }
+
+        return source.toString();
+    }
+}
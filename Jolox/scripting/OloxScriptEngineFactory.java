@@ -0,0 +1,84 @@
+package Jolox.scripting;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import java.util.List;
+
+public class OloxScriptEngineFactory implements ScriptEngineFactory {
+    private static final String NAME = "Olox";
+    private static final String VERSION = "1.0";
+
+    @Override
+    public String getEngineName() {
+        return "Jolox";
+    }
+
+    @Override
+    public String getEngineVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return List.of("olx");
+    }
+
+    @Override
+    public List<String> getMimeTypes() {
+        return List.of("application/x-olox");
+    }
+
+    @Override
+    public List<String> getNames() {
+        return List.of("olox", "Olox", "jolox");
+    }
+
+    @Override
+    public String getLanguageName() {
+        return NAME;
+    }
+
+    @Override
+    public String getLanguageVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public Object getParameter(String key) {
+        return switch (key) {
+            case ScriptEngine.ENGINE -> getEngineName();
+            case ScriptEngine.ENGINE_VERSION -> getEngineVersion();
+            case ScriptEngine.LANGUAGE -> getLanguageName();
+            case ScriptEngine.LANGUAGE_VERSION -> getLanguageVersion();
+            case ScriptEngine.NAME -> getNames().get(0);
+            // Every evaluation gets its own interpreter context, so scripts may be evaluated concurrently
+            case "THREADING" -> "MULTITHREADED";
+            default -> null;
+        };
+    }
+
+    @Override
+    public String getMethodCallSyntax(String obj, String m, String... args) {
+        return obj + "." + m + "(" + String.join(", ", args) + ")";
+    }
+
+    @Override
+    public String getOutputStatement(String toDisplay) {
+        return "print \"" + toDisplay + "\";";
+    }
+
+    @Override
+    public String getProgram(String... statements) {
+        StringBuilder program = new StringBuilder();
+        for(String statement : statements) {
+            program.append(statement).append(";\n");
+        }
+
+        return program.toString();
+    }
+
+    @Override
+    public ScriptEngine getScriptEngine() {
+        return new OloxScriptEngine(this);
+    }
+}
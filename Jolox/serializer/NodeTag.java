@@ -0,0 +1,53 @@
+package Jolox.serializer;
+
+/**
+ * The first byte of every encoded node. The ordinal is what gets written, so new tags must be appended and
+ * {@link ProgramFormat#VERSION} bumped whenever existing ones change.
+ */
+enum NodeTag {
+    NULL,
+
+    BLOCK_STMT,
+    BREAK_STMT,
+    CLASS_STMT,
+    EXPRESSION_STMT,
+    FUNCTION_STMT,
+    IF_STMT,
+    PRINT_STMT,
+    RETURN_STMT,
+    VAR_STMT,
+    WHILE_STMT,
+
+    ASSIGN_EXPR,
+    BINARY_EXPR,
+    CALL_EXPR,
+    FUNCTION_EXPR,
+    GET_EXPR,
+    GROUPING_EXPR,
+    LITERAL_EXPR,
+    LOGICAL_EXPR,
+    SET_EXPR,
+    SUPER_EXPR,
+    TERNARY_EXPR,
+    THIS_EXPR,
+    UNARY_EXPR,
+    VARIABLE_EXPR,
+
+    NIL_VALUE,
+    TRUE_VALUE,
+    FALSE_VALUE,
+    NUMBER_VALUE,
+    STRING_VALUE,
+
+    IMPORT_STMT,
+    COUNTED_LOOP_STMT,
+    // A block the resolver gave no scope of its own
+    SCOPELESS_BLOCK_STMT,
+    YIELD_STMT;
+
+    private static final NodeTag[] tags = values();
+
+    static NodeTag of(byte ordinal) {
+        return tags[ordinal];
+    }
+}
@@ -0,0 +1,75 @@
+package Jolox.serializer;
+
+import Jolox.interpreter.Program;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Keeps the precompiled form of a script next to its source (script.olx -> script.olxc). The cached file records
+ * the hash of the source it was compiled from, so an edited script is simply compiled again.
+ */
+public class ProgramCache {
+    private ProgramCache() {}
+
+    public static Path cachePathFor(Path source) {
+        return source.resolveSibling(source.getFileName() + ProgramFormat.EXTENSION);
+    }
+
+    /**
+     * Returns the cached program for the given source, or null if there is none or it is out of date.
+     */
+    public static Program load(Path source, ByteBuffer sourceBytes) {
+        Path cache = cachePathFor(source);
+        if(!Files.isRegularFile(cache)) return null;
+
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return ProgramReader.read(buffer, hash(sourceBytes));
+        } catch (IOException | RuntimeException e) {
+            // A cache that can't be read is no worse than a missing one
+            return null;
+        }
+    }
+
+    /**
+     * Writes the given program next to its source. Failing to write the cache never fails the run.
+     */
+    public static void store(Path source, ByteBuffer sourceBytes, Program program) {
+        Path cache = cachePathFor(source).toAbsolutePath();
+        Path temporary = null;
+        try {
+            byte[] encoded = ProgramWriter.write(program, hash(sourceBytes));
+            temporary = cache.resolveSibling(cache.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+            Files.write(temporary, encoded);
+            Files.move(temporary, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            try {
+                if(temporary != null) Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+
+            }
+        }
+    }
+
+    /**
+     * The SHA-256 of a script's source, which identifies its compiled form.
+     */
+    public static byte[] hash(ByteBuffer sourceBytes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(sourceBytes.duplicate());
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package Jolox.serializer;
+
+/**
+ * Layout of a precompiled Olox script (.olxc):
+ * header -> "OLXC" version:u16 sourceHash:byte[32] poolOffset:u32 ;
+ * tree -> count:varint stmt* ;
+ * pool -> count:varint ( length:varint utf8:byte[length] )* ;
+ * Nodes start with a {@link NodeTag} byte followed by their fields in declaration order. Tokens are encoded as
+ * type:u8 lexeme:varint line:varint, where the lexeme is an index into the constant pool, so each distinct name is
+ * stored (and, once loaded, allocated) only once. Variable, assignment, this and super expressions are followed by
+ * (depth + 1):varint slot:varint, with a depth of 0 for globals. Function bodies are prefixed with their byte length
+ * so they can be skipped and decoded the first time the function runs.
+ */
+final class ProgramFormat {
+    static final byte[] MAGIC = {'O', 'L', 'X', 'C'};
+    static final short VERSION = 5;
+    static final int HASH_LENGTH = 32;
+    static final int HEADER_LENGTH = MAGIC.length + Short.BYTES + HASH_LENGTH + Integer.BYTES;
+    static final String EXTENSION = "c";
+
+    private ProgramFormat() {}
+}
@@ -0,0 +1,283 @@
+package Jolox.serializer;
+
+import Jolox.interpreter.Program;
+import Jolox.interpreter.Stmt;
+import Jolox.lexical_scanner.Token;
+import Jolox.lexical_scanner.TokenType;
+import Jolox.parser.Expr;
+import Jolox.resolver.Resolution;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Decodes a program written by {@link ProgramWriter}. Only absolute reads are made on the buffer, so it can be a
+ * shared memory-mapped view of the file. Constants are decoded the first time they are referenced, and function
+ * bodies the first time they are executed.
+ */
+class ProgramReader {
+    private static final TokenType[] tokenTypes = TokenType.values();
+
+    private final ByteBuffer buffer;
+    private final Resolution resolution = new Resolution();
+    private final int[] constantOffsets;
+    private final String[] constants;
+
+    private ProgramReader(ByteBuffer buffer, int poolOffset) {
+        this.buffer = buffer;
+
+        Decoder pool = new Decoder(poolOffset);
+        int count = pool.readVarInt();
+        constantOffsets = new int[count];
+        constants = new String[count];
+        for(int i = 0; i < count; i++) {
+            constantOffsets[i] = pool.position;
+            int length = pool.readVarInt();
+            pool.position += length;
+        }
+    }
+
+    /**
+     * Returns null if the buffer doesn't hold a program of this format version compiled from source with the given hash.
+     */
+    static Program read(ByteBuffer buffer, byte[] sourceHash) {
+        if(buffer.limit() < ProgramFormat.HEADER_LENGTH) return null;
+
+        byte[] magic = new byte[ProgramFormat.MAGIC.length];
+        buffer.get(0, magic);
+        if(!Arrays.equals(magic, ProgramFormat.MAGIC)) return null;
+        if(buffer.getShort(magic.length) != ProgramFormat.VERSION) return null;
+
+        byte[] hash = new byte[ProgramFormat.HASH_LENGTH];
+        buffer.get(magic.length + Short.BYTES, hash);
+        if(!Arrays.equals(hash, sourceHash)) return null;
+
+        int poolOffset = buffer.getInt(ProgramFormat.HEADER_LENGTH - Integer.BYTES);
+        ProgramReader reader = new ProgramReader(buffer, poolOffset);
+        List<Stmt> statements = reader.new Decoder(ProgramFormat.HEADER_LENGTH).readStatements();
+        return new Program(statements, reader.resolution);
+    }
+
+    private String constant(int index) {
+        String constant = constants[index];
+        if(constant == null) {
+            Decoder decoder = new Decoder(constantOffsets[index]);
+            int length = decoder.readVarInt();
+            byte[] utf8 = new byte[length];
+            buffer.get(decoder.position, utf8);
+            constant = new String(utf8, StandardCharsets.UTF_8);
+            constants[index] = constant;
+        }
+
+        return constant;
+    }
+
+    private class Decoder {
+        private int position;
+
+        private Decoder(int position) {
+            this.position = position;
+        }
+
+        private List<Stmt> readStatements() {
+            int count = readVarInt();
+            List<Stmt> statements = new ArrayList<>(count);
+            for(int i = 0; i < count; i++) {
+                statements.add(readStmt());
+            }
+
+            return statements;
+        }
+
+        private List<Stmt.Function> readFunctions() {
+            int count = readVarInt();
+            List<Stmt.Function> functions = new ArrayList<>(count);
+            for(int i = 0; i < count; i++) {
+                functions.add((Stmt.Function) readStmt());
+            }
+
+            return functions;
+        }
+
+        private Stmt readStmt() {
+            NodeTag tag = readTag();
+            return switch (tag) {
+                case NULL -> null;
+                case BLOCK_STMT -> new Stmt.Block(readStatements());
+                case SCOPELESS_BLOCK_STMT -> {
+                    Stmt.Block block = new Stmt.Block(readStatements());
+                    resolution.markScopeless(block);
+                    yield block;
+                }
+                case BREAK_STMT -> new Stmt.Break();
+                case CLASS_STMT -> new Stmt.Class(readToken(), (Expr.Variable) readExpr(), readFunctions(),
+                        readFunctions());
+                case EXPRESSION_STMT -> new Stmt.Expression(readExpr());
+                case FUNCTION_STMT -> new Stmt.Function(readToken(), (Expr.Function) readExpr());
+                case IF_STMT -> new Stmt.If(readExpr(), readStmt(), readStmt());
+                case IMPORT_STMT -> {
+                    Token keyword = readToken();
+                    int count = readVarInt();
+                    List<Token> path = new ArrayList<>(count);
+                    for(int i = 0; i < count; i++) {
+                        path.add(readToken());
+                    }
+                    yield new Stmt.Import(keyword, path);
+                }
+                case PRINT_STMT -> new Stmt.Print(readExpr());
+                case RETURN_STMT -> new Stmt.Return(readToken(), readExpr());
+                case VAR_STMT -> new Stmt.Var(readToken(), readExpr());
+                case WHILE_STMT -> new Stmt.While(readExpr(), readStmt());
+                case YIELD_STMT -> new Stmt.Yield(readToken(), readExpr());
+                case COUNTED_LOOP_STMT -> new Stmt.CountedLoop((Expr.Binary) readExpr(), (Expr.Assign) readExpr(),
+                        readStmt());
+                default -> throw new IllegalStateException("Unexpected statement tag " + tag);
+            };
+        }
+
+        private Expr readExpr() {
+            NodeTag tag = readTag();
+            return switch (tag) {
+                case NULL -> null;
+                case ASSIGN_EXPR -> readResolution(new Expr.Assign(readToken(), readExpr()));
+                case BINARY_EXPR -> new Expr.Binary(readExpr(), readToken(), readExpr());
+                case CALL_EXPR -> {
+                    Expr callee = readExpr();
+                    Token paren = readToken();
+                    int count = readVarInt();
+                    List<Expr> arguments = new ArrayList<>(count);
+                    for(int i = 0; i < count; i++) {
+                        arguments.add(readExpr());
+                    }
+                    yield new Expr.Call(callee, paren, arguments);
+                }
+                case FUNCTION_EXPR -> {
+                    int count = readVarInt();
+                    List<Token> parameters = null;
+                    if(count > 0) {
+                        parameters = new ArrayList<>(count - 1);
+                        for(int i = 1; i < count; i++) {
+                            parameters.add(readToken());
+                        }
+                    }
+                    int length = readInt();
+                    List<Stmt> body = new LazyStatements(position);
+                    position += length;
+                    yield new Expr.Function(parameters, body);
+                }
+                case GET_EXPR -> new Expr.Get(readExpr(), readToken());
+                case GROUPING_EXPR -> new Expr.Grouping(readExpr());
+                case LITERAL_EXPR -> new Expr.Literal(readValue());
+                case LOGICAL_EXPR -> new Expr.Logical(readExpr(), readToken(), readExpr());
+                case SET_EXPR -> new Expr.Set(readExpr(), readToken(), readExpr());
+                case SUPER_EXPR -> readResolution(new Expr.Super(readToken(), readToken()));
+                case TERNARY_EXPR -> new Expr.Ternary(readExpr(), readExpr(), readExpr());
+                case THIS_EXPR -> readResolution(new Expr.This(readToken()));
+                case UNARY_EXPR -> new Expr.Unary(readToken(), readExpr());
+                case VARIABLE_EXPR -> readResolution(new Expr.Variable(readToken()));
+                default -> throw new IllegalStateException("Unexpected expression tag " + tag);
+            };
+        }
+
+        private Object readValue() {
+            NodeTag tag = readTag();
+            return switch (tag) {
+                case NIL_VALUE -> null;
+                case TRUE_VALUE -> true;
+                case FALSE_VALUE -> false;
+                case NUMBER_VALUE -> {
+                    double value = buffer.getDouble(position);
+                    position += Double.BYTES;
+                    yield value;
+                }
+                case STRING_VALUE -> constant(readVarInt());
+                default -> throw new IllegalStateException("Unexpected literal tag " + tag);
+            };
+        }
+
+        private Expr readResolution(Expr expr) {
+            int depth = readVarInt();
+            if(depth > 0) {
+                resolution.resolve(expr, depth - 1, readVarInt());
+            }
+
+            return expr;
+        }
+
+        private Token readToken() {
+            TokenType type = tokenTypes[buffer.get(position++)];
+            String lexeme = constant(readVarInt());
+            return new Token(type, lexeme, null, readVarInt());
+        }
+
+        private NodeTag readTag() {
+            return NodeTag.of(buffer.get(position++));
+        }
+
+        private int readInt() {
+            int value = buffer.getInt(position);
+            position += Integer.BYTES;
+            return value;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            return value;
+        }
+    }
+
+    /**
+     * A function body that stays encoded until the function is first called.
+     */
+    private class LazyStatements extends AbstractList<Stmt> {
+        private final int offset;
+        private volatile List<Stmt> statements;
+
+        private LazyStatements(int offset) {
+            this.offset = offset;
+        }
+
+        private List<Stmt> load() {
+            List<Stmt> loaded = statements;
+            if(loaded == null) {
+                synchronized (this) {
+                    loaded = statements;
+                    if(loaded == null) {
+                        loaded = new Decoder(offset).readStatements();
+                        statements = loaded;
+                    }
+                }
+            }
+
+            return loaded;
+        }
+
+        @Override
+        public Stmt get(int index) {
+            return load().get(index);
+        }
+
+        @Override
+        public int size() {
+            return load().size();
+        }
+
+        @Override
+        public Iterator<Stmt> iterator() {
+            return load().iterator();
+        }
+    }
+}
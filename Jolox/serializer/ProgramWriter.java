@@ -0,0 +1,396 @@
+package Jolox.serializer;
+
+import Jolox.interpreter.Program;
+import Jolox.interpreter.Stmt;
+import Jolox.lexical_scanner.Token;
+import Jolox.parser.Expr;
+import Jolox.resolver.Resolution;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes a resolved {@link Program} into the format described by {@link ProgramFormat}.
+ */
+class ProgramWriter implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private final Resolution resolution;
+    private final Map<String, Integer> constants = new LinkedHashMap<>();
+    private byte[] bytes = new byte[4096];
+    private int size = 0;
+
+    private ProgramWriter(Resolution resolution) {
+        this.resolution = resolution;
+    }
+
+    static byte[] write(Program program, byte[] sourceHash) {
+        ProgramWriter writer = new ProgramWriter(program.getResolution());
+        writer.writeBytes(ProgramFormat.MAGIC);
+        writer.writeShort(ProgramFormat.VERSION);
+        writer.writeBytes(sourceHash);
+        int poolOffset = writer.size;
+        writer.writeInt(0);
+
+        writer.writeStatements(program.getStatements());
+
+        writer.patchInt(poolOffset, writer.size);
+        writer.writeVarInt(writer.constants.size());
+        for(String constant : writer.constants.keySet()) {
+            byte[] utf8 = constant.getBytes(StandardCharsets.UTF_8);
+            writer.writeVarInt(utf8.length);
+            writer.writeBytes(utf8);
+        }
+
+        return Arrays.copyOf(writer.bytes, writer.size);
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        writeTag(resolution.isScopeless(stmt) ? NodeTag.SCOPELESS_BLOCK_STMT : NodeTag.BLOCK_STMT);
+        writeStatements(stmt.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        writeTag(NodeTag.BREAK_STMT);
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        writeTag(NodeTag.CLASS_STMT);
+        writeToken(stmt.name);
+        writeExpr(stmt.superclass);
+        writeStatements(stmt.methods);
+        writeStatements(stmt.classMethods);
+        return null;
+    }
+
+    @Override
+    public Void visitCountedLoopStmt(Stmt.CountedLoop stmt) {
+        writeTag(NodeTag.COUNTED_LOOP_STMT);
+        writeExpr(stmt.condition);
+        writeExpr(stmt.increment);
+        writeStmt(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        writeTag(NodeTag.EXPRESSION_STMT);
+        writeExpr(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        writeTag(NodeTag.FUNCTION_STMT);
+        writeToken(stmt.name);
+        writeExpr(stmt.function);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        writeTag(NodeTag.IF_STMT);
+        writeExpr(stmt.condition);
+        writeStmt(stmt.thenBranch);
+        writeStmt(stmt.elseBranch);
+        return null;
+    }
+
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) {
+        writeTag(NodeTag.IMPORT_STMT);
+        writeToken(stmt.keyword);
+        writeVarInt(stmt.path.size());
+        for(Token name : stmt.path) {
+            writeToken(name);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        writeTag(NodeTag.PRINT_STMT);
+        writeExpr(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        writeTag(NodeTag.RETURN_STMT);
+        writeToken(stmt.keyword);
+        writeExpr(stmt.value);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        writeTag(NodeTag.VAR_STMT);
+        writeToken(stmt.name);
+        writeExpr(stmt.initializer);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        writeTag(NodeTag.WHILE_STMT);
+        writeExpr(stmt.condition);
+        writeStmt(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitYieldStmt(Stmt.Yield stmt) {
+        writeTag(NodeTag.YIELD_STMT);
+        writeToken(stmt.keyword);
+        writeExpr(stmt.value);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        writeTag(NodeTag.ASSIGN_EXPR);
+        writeToken(expr.name);
+        writeExpr(expr.value);
+        writeResolution(expr);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        writeTag(NodeTag.BINARY_EXPR);
+        writeExpr(expr.left);
+        writeToken(expr.operator);
+        writeExpr(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        writeTag(NodeTag.CALL_EXPR);
+        writeExpr(expr.callee);
+        writeToken(expr.paren);
+        writeVarInt(expr.arguments.size());
+        for(Expr argument : expr.arguments) {
+            writeExpr(argument);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionExpr(Expr.Function expr) {
+        writeTag(NodeTag.FUNCTION_EXPR);
+        if(expr.parameters == null) {
+            writeVarInt(0);
+        } else {
+            writeVarInt(expr.parameters.size() + 1);
+            for(Token parameter : expr.parameters) {
+                writeToken(parameter);
+            }
+        }
+
+        int lengthOffset = size;
+        writeInt(0);
+        writeStatements(expr.body);
+        patchInt(lengthOffset, size - lengthOffset - Integer.BYTES);
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        writeTag(NodeTag.GET_EXPR);
+        writeExpr(expr.object);
+        writeToken(expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        writeTag(NodeTag.GROUPING_EXPR);
+        writeExpr(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        writeTag(NodeTag.LITERAL_EXPR);
+        if(expr.value == null) {
+            writeTag(NodeTag.NIL_VALUE);
+        } else if(expr.value instanceof Boolean value) {
+            writeTag(value ? NodeTag.TRUE_VALUE : NodeTag.FALSE_VALUE);
+        } else if(expr.value instanceof Double value) {
+            writeTag(NodeTag.NUMBER_VALUE);
+            writeLong(Double.doubleToRawLongBits(value));
+        } else {
+            writeTag(NodeTag.STRING_VALUE);
+            writeConstant((String) expr.value);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        writeTag(NodeTag.LOGICAL_EXPR);
+        writeExpr(expr.left);
+        writeToken(expr.operator);
+        writeExpr(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        writeTag(NodeTag.SET_EXPR);
+        writeExpr(expr.object);
+        writeToken(expr.name);
+        writeExpr(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpr(Expr.Super expr) {
+        writeTag(NodeTag.SUPER_EXPR);
+        writeToken(expr.keyword);
+        writeToken(expr.method);
+        writeResolution(expr);
+        return null;
+    }
+
+    @Override
+    public Void visitTernaryExpr(Expr.Ternary expr) {
+        writeTag(NodeTag.TERNARY_EXPR);
+        writeExpr(expr.condition);
+        writeExpr(expr.left);
+        writeExpr(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+        writeTag(NodeTag.THIS_EXPR);
+        writeToken(expr.keyword);
+        writeResolution(expr);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        writeTag(NodeTag.UNARY_EXPR);
+        writeToken(expr.operator);
+        writeExpr(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        writeTag(NodeTag.VARIABLE_EXPR);
+        writeToken(expr.name);
+        writeResolution(expr);
+        return null;
+    }
+
+    private void writeStatements(List<? extends Stmt> statements) {
+        writeVarInt(statements.size());
+        for(Stmt statement : statements) {
+            writeStmt(statement);
+        }
+    }
+
+    private void writeStmt(Stmt stmt) {
+        if(stmt == null) {
+            writeTag(NodeTag.NULL);
+        } else {
+            stmt.accept(this);
+        }
+    }
+
+    private void writeExpr(Expr expr) {
+        if(expr == null) {
+            writeTag(NodeTag.NULL);
+        } else {
+            expr.accept(this);
+        }
+    }
+
+    private void writeResolution(Expr expr) {
+        Integer depth = resolution.getDepth(expr);
+        if(depth == null) {
+            writeVarInt(0);
+        } else {
+            writeVarInt(depth + 1);
+            writeVarInt(resolution.getSlot(expr));
+        }
+    }
+
+    private void writeToken(Token token) {
+        writeByte((byte) token.getType().ordinal());
+        writeConstant(token.getLexeme());
+        writeVarInt(token.getLine());
+    }
+
+    private void writeConstant(String constant) {
+        Integer index = constants.get(constant);
+        if(index == null) {
+            index = constants.size();
+            constants.put(constant, index);
+        }
+
+        writeVarInt(index);
+    }
+
+    private void writeTag(NodeTag tag) {
+        writeByte((byte) tag.ordinal());
+    }
+
+    private void writeVarInt(int value) {
+        while((value & ~0x7F) != 0) {
+            writeByte((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        writeByte((byte) value);
+    }
+
+    private void writeShort(short value) {
+        writeByte((byte) (value >> 8));
+        writeByte((byte) value);
+    }
+
+    private void writeInt(int value) {
+        ensureCapacity(Integer.BYTES);
+        patchInt(size, value);
+        size += Integer.BYTES;
+    }
+
+    private void writeLong(long value) {
+        writeInt((int) (value >> 32));
+        writeInt((int) value);
+    }
+
+    private void patchInt(int offset, int value) {
+        bytes[offset] = (byte) (value >> 24);
+        bytes[offset + 1] = (byte) (value >> 16);
+        bytes[offset + 2] = (byte) (value >> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private void writeBytes(byte[] values) {
+        ensureCapacity(values.length);
+        System.arraycopy(values, 0, bytes, size, values.length);
+        size += values.length;
+    }
+
+    private void writeByte(byte value) {
+        ensureCapacity(1);
+        bytes[size++] = value;
+    }
+
+    private void ensureCapacity(int extra) {
+        if(size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package Jolox.tools;
+
+import Jolox.interpreter.Interpreter;
+import Jolox.interpreter.Program;
+import Jolox.olox.Olox;
+import Jolox.scripting.OloxScriptEngineFactory;
+import Jolox.utils.ErrorReporter;
+import Jolox.utils.RunMode;
+
+import javax.script.Bindings;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Checks what hosts see when they embed Olox, through the JSR-223 engine or through an interpreter context that runs
+ * one script after another as the REPL does, which the golden-output scripts can't reach. Each check builds an engine
+ * or context of its own and runs scripts in-process.
+ * <pre>
+ * java -cp out Jolox.tools.EngineTests
+ * </pre>
+ * Exits with 1 if any check failed.
+ */
+public class EngineTests {
+    private interface Check {
+        void run() throws Exception;
+    }
+
+    public static void main(String[] args) {
+        Map<String, Check> checks = new LinkedHashMap<>();
+        checks.put("untouched bindings are left alone", EngineTests::untouchedBindings);
+        checks.put("defined and assigned globals are copied back", EngineTests::copiedBack);
+        checks.put("a failed script's tasks stop with it", EngineTests::tasksStopWithScript);
+        checks.put("a failed script's callbacks don't run in the next one", EngineTests::callbacksDroppedAfterFailure);
+
+        int failed = 0;
+        for(Map.Entry<String, Check> check : checks.entrySet()) {
+            try {
+                check.getValue().run();
+                System.out.println("PASS " + check.getKey());
+            } catch (Exception | AssertionError e) {
+                System.out.println("FAIL " + check.getKey() + ": " + e);
+                failed++;
+            }
+        }
+
+        System.out.printf("%d checks, %d failed%n", checks.size(), failed);
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    private static void untouchedBindings() throws Exception {
+        ScriptEngine engine = engine();
+        Bindings global = new SimpleBindings();
+        global.put("shared", "from the global scope");
+        engine.setBindings(global, ScriptContext.GLOBAL_SCOPE);
+        Integer count = 7;
+        engine.put("count", count);
+
+        expect(engine.eval("count + 1;"), 8.0);
+        expect(engine.get("count"), count);
+        expect(engine.get("count").getClass(), Integer.class);
+        expect(engine.getBindings(ScriptContext.ENGINE_SCOPE).containsKey("shared"), false);
+        expect(global.get("shared"), "from the global scope");
+    }
+
+    private static void copiedBack() throws Exception {
+        ScriptEngine engine = engine();
+        Bindings global = new SimpleBindings();
+        global.put("shared", "from the global scope");
+        engine.setBindings(global, ScriptContext.GLOBAL_SCOPE);
+        engine.put("count", 7);
+
+        engine.eval("var defined = \"new\"; count = count + 1; shared = \"assigned\";");
+        expect(engine.get("defined"), "new");
+        expect(engine.get("count"), 8.0);
+        expect(engine.get("shared"), "assigned");
+        expect(global.get("shared"), "from the global scope");
+    }
+
+    private static void tasksStopWithScript() throws Exception {
+        ScriptEngine engine = engine();
+        StringWriter output = new StringWriter();
+        engine.getContext().setWriter(output);
+        engine.getContext().setErrorWriter(new StringWriter());
+
+        expectError(engine, "spawn(fun () { while(true) print \"tick\"; }); print nil + 1;");
+        int length = output.getBuffer().length();
+        Thread.sleep(300);
+        expect(output.getBuffer().length(), length);
+    }
+
+    private static void callbacksDroppedAfterFailure() {
+        StringWriter output = new StringWriter();
+        ErrorReporter errorReporter = new ErrorReporter(new PrintWriter(new StringWriter(), true));
+        Interpreter interpreter = new Interpreter(errorReporter);
+        interpreter.setOutput(output);
+
+        run(interpreter, errorReporter, "after(50, fun () { print \"stale timer\"; });"
+                + "readFile(\"missing.txt\", fun (error, text) { print text == error; });"
+                + "print nil + 1;");
+        expect(errorReporter.hasRuntimeError(), true);
+        run(interpreter, errorReporter, "after(150, fun () { print \"next\"; });");
+        expect(output.toString(), "next" + System.lineSeparator());
+    }
+
+    private static void run(Interpreter interpreter, ErrorReporter errorReporter, String source) {
+        Program program = Olox.compile(source, RunMode.REPL, errorReporter);
+        if(program == null) throw new AssertionError("could not compile " + source);
+        interpreter.interpret(program, RunMode.REPL);
+    }
+
+    private static ScriptEngine engine() {
+        ScriptEngine engine = new OloxScriptEngineFactory().getScriptEngine();
+        engine.getContext().setWriter(new StringWriter());
+        return engine;
+    }
+
+    private static void expectError(ScriptEngine engine, String script) {
+        try {
+            engine.eval(script);
+        } catch (ScriptException e) {
+            return;
+        }
+        throw new AssertionError("expected a ScriptException from " + script);
+    }
+
+    private static void expect(Object actual, Object expected) {
+        if(!Objects.equals(actual, expected)) throw new AssertionError("expected " + expected + " but got " + actual);
+    }
+}
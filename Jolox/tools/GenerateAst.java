@@ -43,13 +43,16 @@ public class GenerateAst {
                 BLOCK_STMT.stmt,
                 BREAK_STMT.stmt,
                 CLASS_STMT.stmt,
+                COUNTED_LOOP_STMT.stmt,
                 EXPR_STMT.stmt,
                 FUNC_STMT.stmt,
                 IF_STMT.stmt,
+                IMPORT_STMT.stmt,
                 PRINT_STMT.stmt,
                 RETURN_STMT.stmt,
                 VARIABLE_STMT.stmt,
-                WHILE_STMT.stmt
+                WHILE_STMT.stmt,
+                YIELD_STMT.stmt
         ), PackageType.STMT);
     }
 
@@ -0,0 +1,175 @@
+package Jolox.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static Jolox.utils.ExitCode.COMMAND_LINE_USAGE_ERROR;
+
+/**
+ * Runs the golden-output scripts in a directory, Jolox/test_examples by default. Every script.olx in it is run as a
+ * separate process in three modes: from the tree the parser built, from an AstArena, and from its precompiled .olxc
+ * form, which the first of two runs writes and the second reads. In every mode, what the script writes to stdout and
+ * stderr, followed by a line with its exit code, must match script.expected exactly. Subdirectories hold modules and
+ * data for the scripts, and are not run themselves.
+ * <p>
+ * A first line starting with {@code // options:} gives JVM options, such as resource limits, for every run of the
+ * script. {@code --update} writes each script's expected output from its tree run instead of checking it.
+ * <pre>
+ * java -cp out Jolox.tools.GoldenTests Jolox/test_examples
+ * </pre>
+ * Exits with 1 if any run did not match.
+ */
+public class GoldenTests {
+    private static final String OPTIONS = "// options:";
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private record Mode(String name, List<String> properties) {}
+
+    private static final Mode TREE = new Mode("tree", List.of("-Djolox.precompile=false"));
+    private static final Mode ARENA = new Mode("arena", List.of("-Djolox.precompile=false", "-Djolox.arena=true"));
+    private static final Mode PRECOMPILED = new Mode("olxc", List.of("-Djolox.precompile=true"));
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        boolean update = args.length > 0 && args[0].equals("--update");
+        int rest = update ? 1 : 0;
+        if(args.length - rest > 1) {
+            System.err.println("Usage: golden_tests [--update] [directory]");
+            System.exit(COMMAND_LINE_USAGE_ERROR.code);
+        }
+
+        Path directory = Path.of(args.length > rest ? args[rest] : "Jolox/test_examples");
+        List<Path> scripts;
+        try (Stream<Path> files = Files.list(directory)) {
+            scripts = files.filter(file -> file.toString().endsWith(".olx")).sorted().toList();
+        }
+        if(scripts.isEmpty()) {
+            System.err.println("No .olx scripts in " + directory);
+            System.exit(1);
+        }
+
+        int failed = 0;
+        for(Path script : scripts) {
+            failed += update ? update(script) : check(script);
+        }
+
+        if(!update) System.out.printf("%d scripts, %d failed%n", scripts.size(), failed);
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    private static int update(Path script) throws IOException, InterruptedException {
+        Files.writeString(expectedPathFor(script), run(script, TREE), StandardCharsets.UTF_8);
+        System.out.println("updated " + script.getFileName());
+        return 0;
+    }
+
+    /**
+     * Runs the script in every mode, returning 1 if any run did not match its expected output and 0 otherwise.
+     */
+    private static int check(Path script) throws IOException, InterruptedException {
+        String name = script.getFileName().toString();
+        Path expectedPath = expectedPathFor(script);
+        if(!Files.isRegularFile(expectedPath)) {
+            System.out.println("FAIL " + name + ": no " + expectedPath.getFileName()
+                    + ", run with --update to create it");
+            return 1;
+        }
+        String expected = Files.readString(expectedPath, StandardCharsets.UTF_8).replace("\r\n", "\n");
+
+        List<String> failures = new ArrayList<>();
+        for(Mode mode : List.of(TREE, ARENA)) {
+            String actual = run(script, mode);
+            if(!actual.equals(expected)) failures.add(describe(mode.name(), expected, actual));
+        }
+
+        // The first run compiles the script and writes its .olxc, which the second run has to read back
+        Path cache = script.resolveSibling(name + "c");
+        Files.deleteIfExists(cache);
+        String compiled = run(script, PRECOMPILED);
+        boolean cached = Files.isRegularFile(cache);
+        String loaded = run(script, PRECOMPILED);
+        Files.deleteIfExists(cache);
+        if(!compiled.equals(expected)) failures.add(describe("olxc (compiling)", expected, compiled));
+        if(!loaded.equals(expected)) failures.add(describe("olxc (loading)", expected, loaded));
+        // Scripts with build errors are never cached
+        if(!cached && !expected.endsWith("exit 65\n")) {
+            failures.add("  olxc: no " + cache.getFileName() + " was written\n");
+        }
+
+        if(failures.isEmpty()) {
+            System.out.println("PASS " + name);
+            return 0;
+        }
+
+        System.out.println("FAIL " + name);
+        failures.forEach(System.out::print);
+        return 1;
+    }
+
+    private static Path expectedPathFor(Path script) {
+        return script.resolveSibling(script.getFileName().toString().replaceFirst("\\.olx$", ".expected"));
+    }
+
+    /**
+     * Runs the script to completion and returns its output followed by its exit code. Output goes to a temporary
+     * file so stdout and stderr keep the order the script wrote them in.
+     */
+    private static String run(Path script, Mode mode) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.addAll(options(script));
+        command.addAll(mode.properties());
+        command.add("Jolox.olox.Olox");
+        command.add(script.toString());
+
+        File output = File.createTempFile("olox-golden", ".out");
+        try {
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(output)
+                    .redirectInput(ProcessBuilder.Redirect.from(new File(nullDevice())))
+                    .start();
+            if(!process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+                return "timed out after " + TIMEOUT_SECONDS + "s\n";
+            }
+
+            String text = Files.readString(output.toPath(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+            return text + "exit " + process.exitValue() + "\n";
+        } finally {
+            Files.deleteIfExists(output.toPath());
+        }
+    }
+
+    private static List<String> options(Path script) throws IOException {
+        try (Stream<String> lines = Files.lines(script)) {
+            String first = lines.findFirst().orElse("");
+            if(!first.startsWith(OPTIONS)) return List.of();
+
+            String options = first.substring(OPTIONS.length()).trim();
+            return options.isEmpty() ? List.of() : List.of(options.split("\\s+"));
+        }
+    }
+
+    private static String describe(String mode, String expected, String actual) {
+        return "  " + mode + ":\n" + indent("expected:", expected) + indent("actual:", actual);
+    }
+
+    private static String indent(String header, String output) {
+        StringBuilder text = new StringBuilder("    ").append(header).append('\n');
+        output.lines().limit(30).forEach(line -> text.append("      ").append(line).append('\n'));
+        return text.toString();
+    }
+
+    private static String nullDevice() {
+        return System.getProperty("os.name").startsWith("Windows") ? "NUL" : "/dev/null";
+    }
+}
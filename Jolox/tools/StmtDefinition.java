@@ -6,13 +6,16 @@ public enum StmtDefinition {
     BREAK_STMT("Break: "),
     CLASS_STMT("Class: Token name, Expr.Variable superclass, List<Stmt.Function> methods, " +
             "List<Stmt.Function> classMethods"),
+    COUNTED_LOOP_STMT("CountedLoop: Expr.Binary condition, Expr.Assign increment, Stmt body"),
     EXPR_STMT("Expression: Expr expression"),
     FUNC_STMT("Function: Token name, Expr.Function function"),
     IF_STMT("If: Expr condition, Stmt thenBranch, Stmt elseBranch"),
+    IMPORT_STMT("Import: Token keyword, List<Token> path"),
     PRINT_STMT("Print: Expr expression"),
     RETURN_STMT("Return: Token keyword, Expr value"),
     VARIABLE_STMT("Var: Token name, Expr initializer"),
-    WHILE_STMT("While: Expr condition, Stmt body");
+    WHILE_STMT("While: Expr condition, Stmt body"),
+    YIELD_STMT("Yield: Token keyword, Expr value");
 
     public final String stmt;
     StmtDefinition(String stmt) { this.stmt = stmt; }
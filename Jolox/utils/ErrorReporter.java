@@ -3,16 +3,23 @@ package Jolox.utils;
 import Jolox.lexical_scanner.Token;
 import Jolox.lexical_scanner.TokenType;
 import Jolox.exceptions.RuntimeError;
+import Jolox.profiler.Profiler;
+import Jolox.profiler.RuntimeErrorEvent;
+
+import java.io.PrintWriter;
 
 public class ErrorReporter {
+    private final PrintWriter err;
     private boolean hadBuildError = false;
     private boolean hadRuntimeError = false;
-    private ErrorReporter(){}
+    private String lastError;
 
-    private static final ErrorReporter instance = new ErrorReporter();
+    public ErrorReporter() {
+        this(new PrintWriter(System.err, true));
+    }
 
-    public static ErrorReporter getInstance() {
-        return instance;
+    public ErrorReporter(PrintWriter err) {
+        this.err = err;
     }
 
     public void error(int line, String message) {
@@ -39,18 +46,35 @@ public class ErrorReporter {
         hadBuildError = status;
     }
 
+    public String getLastError() {
+        return lastError;
+    }
+
     private void report(int line, String message) {
-        System.err.println("[line " + line + "] Error: " + message);
+        lastError = "[line " + line + "] Error: " + message;
+        err.println(lastError);
         this.hadBuildError = true;
     }
 
     private void report(int line, String where, String message) {
-        System.err.println("[line " + line + "] Error" + where + ": " + message);
+        lastError = "[line " + line + "] Error" + where + ": " + message;
+        err.println(lastError);
         this.hadBuildError = true;
     }
 
     public void runTimeError(RuntimeError error) {
-        System.err.println(error.getMessage() + "\n[line " + error.getToken().getLine() + "]");
+        // Errors raised at a top-level loop back-edge, such as running out of fuel, have no token to point at
+        Token token = error.getToken();
+        lastError = token == null ? error.getMessage() : error.getMessage() + "\n[line " + token.getLine() + "]";
+        err.println(lastError);
         hadRuntimeError = true;
+
+        if(!Profiler.recording()) return;
+        RuntimeErrorEvent event = new RuntimeErrorEvent();
+        if(event.isEnabled()) {
+            event.message = error.getMessage();
+            event.line = token == null ? 0 : token.getLine();
+            event.commit();
+        }
     }
 }
@@ -3,6 +3,7 @@ package Jolox.utils;
 public enum ExitCode {
     COMMAND_LINE_USAGE_ERROR(64),
     USER_DATA_INCORRECT(65),
+    NO_INPUT(66),
     RUNTIME_ERROR(70);
 
     public final int code;
@@ -0,0 +1,10 @@
+package Jolox.utils;
+
+public enum FlushPolicy {
+    // After every line, for interactive sessions
+    ON_NEWLINE,
+    // Whenever the buffer fills, and when the script finishes
+    ON_SIZE,
+    // Only when the script finishes or the output is flushed explicitly; the buffer grows as needed
+    ON_EXIT
+}